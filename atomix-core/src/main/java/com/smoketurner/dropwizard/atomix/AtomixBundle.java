@@ -15,8 +15,16 @@
  */
 package com.smoketurner.dropwizard.atomix;
 
+import com.smoketurner.dropwizard.atomix.bench.AtomixBenchCommand;
+import com.smoketurner.dropwizard.atomix.cache.AtomixCache;
+import com.smoketurner.dropwizard.atomix.cache.ResponseCacheFeature;
+import com.smoketurner.dropwizard.atomix.events.ClusterEventBroadcaster;
+import com.smoketurner.dropwizard.atomix.events.ClusterEventFactory;
+import com.smoketurner.dropwizard.atomix.events.ClusterEventResource;
 import com.smoketurner.dropwizard.atomix.health.AtomixHealthCheck;
 import com.smoketurner.dropwizard.atomix.managed.AtomixManager;
+import com.smoketurner.dropwizard.atomix.primitive.PrimitiveDecorator;
+import com.smoketurner.dropwizard.atomix.slowlog.SlowOperationServlet;
 import io.atomix.core.Atomix;
 import io.dropwizard.Configuration;
 import io.dropwizard.ConfiguredBundle;
@@ -39,8 +47,12 @@ public abstract class AtomixBundle<C extends Configuration>
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public void initialize(Bootstrap<?> bootstrap) {
-    // nothing to initialize
+    final Bootstrap<C> configured = (Bootstrap<C>) bootstrap;
+    configured.addCommand(
+        new AtomixBenchCommand<>(
+            this, configured.getApplication().getConfigurationClass(), clusterId));
   }
 
   @Override
@@ -50,7 +62,34 @@ public abstract class AtomixBundle<C extends Configuration>
     factory.setClusterId(clusterId);
 
     final Atomix atomix = factory.build();
-    environment.lifecycle().manage(new AtomixManager(atomix));
+    environment.lifecycle().manage(new AtomixManager(atomix, factory.getWarmup()));
+
+    final PrimitiveDecorator decorator = factory.buildPrimitiveDecorator(environment);
+    final SlowOperationServlet servlet =
+        new SlowOperationServlet(decorator.getSlowOperationLog(), environment.getObjectMapper());
+    environment
+        .admin()
+        .addServlet("atomix-slow-operations", servlet)
+        .addMapping("/atomix/slow-operations");
+
+    final ClusterEventFactory events = factory.getEvents();
+    if (!events.getTopics().isEmpty()) {
+      final ClusterEventBroadcaster broadcaster = events.build(atomix, environment);
+      environment.jersey().register(new ClusterEventResource(broadcaster));
+    }
+
+    environment.jersey().register(factory.getIdempotency().build(atomix, environment));
+
+    final AtomixCache cache = factory.buildCache(environment);
+    environment
+        .jersey()
+        .register(
+            new ResponseCacheFeature(
+                cache,
+                factory.getCache().getVaryHeaders(),
+                factory.getCache().getLookupTimeout(),
+                environment.getObjectMapper()));
+
     environment.healthChecks().register("atomix", new AtomixHealthCheck(atomix));
   }
 }
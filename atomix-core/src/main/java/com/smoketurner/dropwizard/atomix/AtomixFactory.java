@@ -17,17 +17,29 @@ package com.smoketurner.dropwizard.atomix;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
+import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.smoketurner.dropwizard.atomix.cache.AtomixCache;
+import com.smoketurner.dropwizard.atomix.cache.CacheFactory;
+import com.smoketurner.dropwizard.atomix.events.ClusterEventFactory;
+import com.smoketurner.dropwizard.atomix.idempotency.IdempotencyFactory;
+import com.smoketurner.dropwizard.atomix.primitive.PrimitiveDecorator;
+import com.smoketurner.dropwizard.atomix.primitive.PrimitiveFactory;
+import com.smoketurner.dropwizard.atomix.slowlog.SlowOperationFactory;
+import com.smoketurner.dropwizard.atomix.slowlog.SlowOperationLog;
+import com.smoketurner.dropwizard.atomix.warmup.WarmupFactory;
 import io.atomix.cluster.ClusterConfig;
 import io.atomix.cluster.Member;
 import io.atomix.cluster.Node;
@@ -38,11 +50,14 @@ import io.atomix.core.AtomixBuilder;
 import io.atomix.core.profile.ConsensusProfile;
 import io.atomix.core.profile.ConsensusProfileConfig;
 import io.atomix.core.profile.Profile;
+import io.dropwizard.setup.Environment;
 
 public class AtomixFactory {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AtomixFactory.class);
   private final AtomicReference<Atomix> atomixRef = new AtomicReference<>();
+  private final AtomicReference<PrimitiveDecorator> decoratorRef = new AtomicReference<>();
+  private final AtomicReference<AtomixCache> cacheRef = new AtomicReference<>();
 
   /** @see {@link ClusterConfig.DEFAULT_CLUSTER_NAME} */
   @NotEmpty private String clusterId = "atomix";
@@ -54,6 +69,18 @@ public class AtomixFactory {
   /** @see {@link ConsensusProfileConfig.dataPath} */
   @NotEmpty private String dataPath = System.getProperty("atomix.data", ".data");
 
+  @Valid @NotNull private WarmupFactory warmup = new WarmupFactory();
+
+  @Valid @NotNull private Map<String, PrimitiveFactory> primitives = Collections.emptyMap();
+
+  @Valid @NotNull private SlowOperationFactory slowOperations = new SlowOperationFactory();
+
+  @Valid @NotNull private ClusterEventFactory events = new ClusterEventFactory();
+
+  @Valid @NotNull private IdempotencyFactory idempotency = new IdempotencyFactory();
+
+  @Valid @NotNull private CacheFactory cache = new CacheFactory();
+
   @JsonProperty
   public String getClusterId() {
     return clusterId;
@@ -99,6 +126,115 @@ public class AtomixFactory {
     this.members = members;
   }
 
+  @JsonProperty
+  public WarmupFactory getWarmup() {
+    return warmup;
+  }
+
+  @JsonProperty
+  public void setWarmup(WarmupFactory warmup) {
+    this.warmup = warmup;
+  }
+
+  @JsonProperty
+  public Map<String, PrimitiveFactory> getPrimitives() {
+    return primitives;
+  }
+
+  @JsonProperty
+  public void setPrimitives(Map<String, PrimitiveFactory> primitives) {
+    this.primitives = primitives;
+  }
+
+  @JsonProperty
+  public SlowOperationFactory getSlowOperations() {
+    return slowOperations;
+  }
+
+  @JsonProperty
+  public void setSlowOperations(SlowOperationFactory slowOperations) {
+    this.slowOperations = slowOperations;
+  }
+
+  @JsonProperty
+  public ClusterEventFactory getEvents() {
+    return events;
+  }
+
+  @JsonProperty
+  public void setEvents(ClusterEventFactory events) {
+    this.events = events;
+  }
+
+  @JsonProperty
+  public IdempotencyFactory getIdempotency() {
+    return idempotency;
+  }
+
+  @JsonProperty
+  public void setIdempotency(IdempotencyFactory idempotency) {
+    this.idempotency = idempotency;
+  }
+
+  @JsonProperty
+  public CacheFactory getCache() {
+    return cache;
+  }
+
+  @JsonProperty
+  public void setCache(CacheFactory cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Build the decorator which applies the per-primitive configuration to asynchronous primitives.
+   * Only the first call creates the decorator (registering its metrics and managed scheduler);
+   * later calls return the same instance.
+   *
+   * @param environment Dropwizard environment
+   * @return primitive decorator
+   */
+  @JsonIgnore
+  public PrimitiveDecorator buildPrimitiveDecorator(Environment environment) {
+    final PrimitiveDecorator existingDecorator = decoratorRef.get();
+    if (existingDecorator != null) {
+      return existingDecorator;
+    }
+
+    synchronized (decoratorRef) {
+      if (decoratorRef.get() == null) {
+        final ScheduledExecutorService scheduler =
+            environment.lifecycle().scheduledExecutorService("atomix-primitive-%d").build();
+        final SlowOperationLog slowOperationLog = slowOperations.build(build());
+        decoratorRef.set(
+            new PrimitiveDecorator(primitives, environment.metrics(), scheduler, slowOperationLog));
+      }
+      return decoratorRef.get();
+    }
+  }
+
+  /**
+   * Build the cluster-wide cache. Only the first call creates the cache (registering its metrics);
+   * later calls return the same instance.
+   *
+   * @param environment Dropwizard environment
+   * @return distributed cache
+   */
+  @JsonIgnore
+  public AtomixCache buildCache(Environment environment) {
+    final AtomixCache existingCache = cacheRef.get();
+    if (existingCache != null) {
+      return existingCache;
+    }
+
+    synchronized (cacheRef) {
+      if (cacheRef.get() == null) {
+        cacheRef.set(cache.build(build(), environment.metrics()));
+      }
+      return cacheRef.get();
+    }
+  }
+
   @JsonIgnore
   public Atomix build() {
     final Atomix existingAtomix = atomixRef.get();
@@ -111,13 +247,34 @@ public class AtomixFactory {
     final Profile consensus =
         ConsensusProfile.builder().withDataPath(dataPath).withMembers(getMemberIds()).build();
 
+    final Atomix atomix = builder(consensus, Profile.dataGrid()).build();
+    if (atomixRef.compareAndSet(null, atomix)) {
+      return atomix;
+    }
+    return build();
+  }
+
+  /**
+   * Build a new Atomix instance which joins the cluster as a client, without hosting any partitions
+   * or taking part in consensus, e.g. to drive load against the cluster's servers. Unlike {@link
+   * #build()}, every call returns a new instance.
+   *
+   * @return Atomix client instance
+   */
+  @JsonIgnore
+  public Atomix buildClient() {
+    LOGGER.info("Atomix Cluster ID: {} (client)", clusterId);
+    return builder(Profile.client()).build();
+  }
+
+  private AtomixBuilder builder(Profile... profiles) {
     final NodeDiscoveryProvider locationProvider =
         BootstrapDiscoveryProvider.builder().withNodes(getMembers()).build();
 
     final AtomixBuilder builder =
         Atomix.builder()
             .withClusterId(clusterId)
-            .withProfiles(consensus, Profile.dataGrid())
+            .withProfiles(profiles)
             .withMulticastEnabled(false)
             .withShutdownHook(false)
             .withMembershipProvider(locationProvider);
@@ -130,11 +287,6 @@ public class AtomixFactory {
                 .withAddress(member.address())
                 .withHost(member.host())
                 .withProperties(member.properties()));
-
-    final Atomix atomix = builder.build();
-    if (atomixRef.compareAndSet(null, atomix)) {
-      return atomix;
-    }
-    return build();
+    return builder;
   }
 }
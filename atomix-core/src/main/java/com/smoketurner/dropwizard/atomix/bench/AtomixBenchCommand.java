@@ -0,0 +1,338 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.bench;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.smoketurner.dropwizard.atomix.AtomixConfiguration;
+import com.smoketurner.dropwizard.atomix.AtomixFactory;
+import io.atomix.core.Atomix;
+import io.dropwizard.Configuration;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.util.Duration;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Joins the cluster described by the application's {@link AtomixFactory} and drives a primitive
+ * workload against it, reporting throughput and latency percentiles. The configuration should use
+ * a {@code localMember} which is not one of the running server members.
+ *
+ * <pre>
+ * java -jar app.jar atomix-bench --workload map --mix get:80,put:20 --distribution zipfian \
+ *     --concurrency 64 --duration 5m bench.yml
+ * </pre>
+ */
+public class AtomixBenchCommand<T extends Configuration> extends ConfiguredCommand<T> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AtomixBenchCommand.class);
+
+  private final AtomixConfiguration<T> atomixConfiguration;
+  private final Class<T> configurationClass;
+  private final String clusterId;
+
+  /**
+   * Constructor
+   *
+   * @param atomixConfiguration Returns the {@link AtomixFactory} from the configuration
+   * @param configurationClass Application configuration class
+   * @param clusterId Atomix cluster ID, as set by the bundle when the application runs
+   */
+  public AtomixBenchCommand(
+      final AtomixConfiguration<T> atomixConfiguration,
+      final Class<T> configurationClass,
+      final String clusterId) {
+    super("atomix-bench", "Runs a load test against the Atomix cluster");
+    this.atomixConfiguration = Objects.requireNonNull(atomixConfiguration);
+    this.configurationClass = Objects.requireNonNull(configurationClass);
+    this.clusterId = Objects.requireNonNull(clusterId);
+  }
+
+  @Override
+  protected Class<T> getConfigurationClass() {
+    return configurationClass;
+  }
+
+  @Override
+  public void configure(Subparser subparser) {
+    super.configure(subparser);
+
+    subparser
+        .addArgument("--workload")
+        .dest("workload")
+        .choices("map", "counter")
+        .setDefault("map")
+        .help("primitive to drive");
+    subparser
+        .addArgument("--name")
+        .dest("name")
+        .setDefault("atomix-bench")
+        .help("name of the primitive to drive");
+    subparser
+        .addArgument("--mix")
+        .dest("mix")
+        .help("weighted operations, e.g. get:80,put:20 (default: equal weights)");
+    subparser
+        .addArgument("--keys")
+        .dest("keys")
+        .type(Integer.class)
+        .setDefault(10000)
+        .help("number of distinct keys");
+    subparser
+        .addArgument("--distribution")
+        .dest("distribution")
+        .choices("uniform", "zipfian")
+        .setDefault("uniform")
+        .help("key access distribution");
+    subparser
+        .addArgument("--zipfian-exponent")
+        .dest("exponent")
+        .type(Double.class)
+        .setDefault(0.99)
+        .help("skew of the zipfian distribution, between 0 and 1");
+    subparser
+        .addArgument("--concurrency")
+        .dest("concurrency")
+        .type(Integer.class)
+        .setDefault(16)
+        .help("number of concurrent operations");
+    subparser
+        .addArgument("--duration")
+        .dest("duration")
+        .setDefault("60s")
+        .help("how long to run for, e.g. 30s or 5m");
+    subparser
+        .addArgument("--value-size")
+        .dest("valueSize")
+        .type(Integer.class)
+        .setDefault(128)
+        .help("size in bytes of written values");
+    subparser
+        .addArgument("--format")
+        .dest("format")
+        .choices("text", "json")
+        .setDefault("text")
+        .help("report format");
+    subparser
+        .addArgument("--output")
+        .dest("output")
+        .help("file to write the report to, required for json (default: standard output)");
+  }
+
+  @Override
+  protected void run(Bootstrap<T> bootstrap, Namespace namespace, T configuration)
+      throws Exception {
+    final BenchWorkload workload =
+        BenchWorkload.valueOf(namespace.getString("workload").toUpperCase(Locale.ENGLISH));
+    final Map<String, Integer> mix = parseMix(workload, namespace.getString("mix"));
+    final int keys = namespace.getInt("keys");
+    final int concurrency = namespace.getInt("concurrency");
+    final Duration duration = Duration.parse(namespace.getString("duration"));
+    final String format = namespace.getString("format");
+    final String output = namespace.getString("output");
+    if ("json".equals(format) && output == null) {
+      // the console log appender also writes to standard output, which would corrupt the JSON
+      throw new IllegalArgumentException("--format json requires --output");
+    }
+    final KeyGenerator keyGenerator =
+        "zipfian".equals(namespace.getString("distribution"))
+            ? KeyGenerator.zipfian(keys, namespace.getDouble("exponent"))
+            : KeyGenerator.uniform(keys);
+
+    final AtomixFactory factory = atomixConfiguration.getAtomixFactory(configuration);
+    factory.setClusterId(clusterId);
+    // a client does not host any partitions, so the run does not change the cluster under test
+    final Atomix atomix = factory.buildClient();
+
+    LOGGER.info("Starting Atomix client (will block until the cluster is joined)...");
+    atomix.start().join();
+
+    final BenchReport report =
+        new BenchReport(
+            workload.name().toLowerCase(Locale.ENGLISH),
+            namespace.getString("name"),
+            concurrency,
+            namespace.getString("distribution"),
+            keys,
+            mix.keySet());
+
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.min(concurrency, Runtime.getRuntime().availableProcessors()));
+    try {
+      final String value = Strings.repeat("x", namespace.getInt("valueSize"));
+      final BenchWorkload.Target target = workload.open(atomix, namespace.getString("name"), value);
+
+      LOGGER.info("Running {} workload {} for {}", workload, mix, duration);
+      final Runner runner = new Runner(target, mix, keyGenerator, report, executor, concurrency);
+      runner.run(duration);
+    } finally {
+      executor.shutdownNow();
+      atomix.stop().join();
+    }
+
+    if ("json".equals(format)) {
+      bootstrap
+          .getObjectMapper()
+          .writerWithDefaultPrettyPrinter()
+          .writeValue(new File(output), report);
+    } else if (output != null) {
+      try (PrintStream stream = new PrintStream(output, StandardCharsets.UTF_8.name())) {
+        report.print(stream);
+      }
+    } else {
+      report.print(System.out);
+    }
+    if (output != null) {
+      LOGGER.info("Wrote benchmark report to {}", output);
+    }
+  }
+
+  private static Map<String, Integer> parseMix(BenchWorkload workload, String mix) {
+    final Map<String, Integer> weights = new LinkedHashMap<>();
+    if (Strings.isNullOrEmpty(mix)) {
+      workload.getOperations().forEach(operation -> weights.put(operation, 1));
+      return weights;
+    }
+
+    Splitter.on(',')
+        .trimResults()
+        .omitEmptyStrings()
+        .withKeyValueSeparator(':')
+        .split(mix)
+        .forEach(
+            (operation, weight) -> {
+              if (!workload.getOperations().contains(operation)) {
+                throw new IllegalArgumentException(
+                    String.format(
+                        "Unknown %s operation '%s', expected one of %s",
+                        workload, operation, workload.getOperations()));
+              }
+              weights.put(operation, Integer.parseInt(weight.trim()));
+            });
+    return weights;
+  }
+
+  /**
+   * Keeps a fixed number of operations outstanding (a closed loop) until the duration has elapsed.
+   */
+  private static final class Runner {
+    private final BenchWorkload.Target target;
+    private final String[] operations;
+    private final int[] cumulativeWeights;
+    private final KeyGenerator keyGenerator;
+    private final BenchReport report;
+    private final ExecutorService executor;
+    private final CountDownLatch done;
+    private volatile long deadline;
+
+    Runner(
+        BenchWorkload.Target target,
+        Map<String, Integer> mix,
+        KeyGenerator keyGenerator,
+        BenchReport report,
+        ExecutorService executor,
+        int concurrency) {
+      this.target = target;
+      this.keyGenerator = keyGenerator;
+      this.report = report;
+      this.executor = executor;
+      this.done = new CountDownLatch(concurrency);
+
+      final List<String> names = new ArrayList<>(mix.keySet());
+      this.operations = names.toArray(new String[0]);
+      this.cumulativeWeights = new int[operations.length];
+      int total = 0;
+      for (int i = 0; i < operations.length; i++) {
+        total += mix.get(operations[i]);
+        cumulativeWeights[i] = total;
+      }
+      if (total <= 0) {
+        throw new IllegalArgumentException("Operation mix must have a positive total weight");
+      }
+    }
+
+    void run(Duration duration) throws InterruptedException {
+      final long startTime = System.nanoTime();
+      deadline = startTime + duration.toNanoseconds();
+      for (long i = done.getCount(); i > 0; i--) {
+        executor.execute(this::next);
+      }
+
+      // allow outstanding operations some time to complete once the duration has elapsed
+      final long timeout = duration.toNanoseconds() + TimeUnit.SECONDS.toNanos(30);
+      if (!done.await(timeout, TimeUnit.NANOSECONDS)) {
+        LOGGER.warn("{} operations did not complete before the benchmark ended", done.getCount());
+      }
+      report.setElapsedNanos(System.nanoTime() - startTime);
+    }
+
+    private void next() {
+      if (System.nanoTime() - deadline >= 0) {
+        done.countDown();
+        return;
+      }
+
+      final String operation = nextOperation();
+      final String key = Integer.toString(keyGenerator.next());
+      final long startTime = System.nanoTime();
+      final CompletableFuture<?> future;
+      try {
+        future = target.execute(operation, key);
+      } catch (RuntimeException e) {
+        // record the failure and keep this slot running rather than losing it until the deadline
+        report.record(operation, System.nanoTime() - startTime, true);
+        executor.execute(this::next);
+        return;
+      }
+      future.whenCompleteAsync(
+          (result, error) -> {
+            report.record(operation, System.nanoTime() - startTime, error != null);
+            next();
+          },
+          executor);
+    }
+
+    private String nextOperation() {
+      final int total = cumulativeWeights[cumulativeWeights.length - 1];
+      final int value = ThreadLocalRandom.current().nextInt(total);
+      for (int i = 0; i < cumulativeWeights.length; i++) {
+        if (value < cumulativeWeights[i]) {
+          return operations[i];
+        }
+      }
+      return operations[operations.length - 1];
+    }
+  }
+}
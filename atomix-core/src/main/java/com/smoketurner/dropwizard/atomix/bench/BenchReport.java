@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.bench;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+import io.dropwizard.util.Duration;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/** Latency and throughput recorded for each operation of a benchmark run. */
+public class BenchReport {
+
+  private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+  private final String workload;
+  private final String name;
+  private final int concurrency;
+  private final String distribution;
+  private final int keys;
+  private final Map<String, OperationStats> operations = new LinkedHashMap<>();
+  private long elapsedNanos;
+
+  BenchReport(
+      String workload,
+      String name,
+      int concurrency,
+      String distribution,
+      int keys,
+      Iterable<String> operations) {
+    this.workload = workload;
+    this.name = name;
+    this.concurrency = concurrency;
+    this.distribution = distribution;
+    this.keys = keys;
+    operations.forEach(operation -> this.operations.put(operation, new OperationStats()));
+  }
+
+  void record(String operation, long latencyNanos, boolean failed) {
+    operations.get(operation).record(latencyNanos, failed);
+  }
+
+  void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  @JsonProperty
+  public String getWorkload() {
+    return workload;
+  }
+
+  @JsonProperty
+  public String getName() {
+    return name;
+  }
+
+  @JsonProperty
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  @JsonProperty
+  public String getDistribution() {
+    return distribution;
+  }
+
+  @JsonProperty
+  public int getKeys() {
+    return keys;
+  }
+
+  @JsonProperty
+  public double getElapsedSeconds() {
+    return elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
+  @JsonProperty
+  public long getTotalOperations() {
+    return operations.values().stream().mapToLong(OperationStats::getCount).sum();
+  }
+
+  @JsonProperty
+  public double getThroughput() {
+    return throughput(getTotalOperations());
+  }
+
+  @JsonProperty
+  public Map<String, OperationStats> getOperations() {
+    return operations;
+  }
+
+  private double throughput(long count) {
+    return elapsedNanos == 0 ? 0 : count / getElapsedSeconds();
+  }
+
+  /**
+   * Print the report as a table.
+   *
+   * @param output Stream to print to
+   */
+  public void print(PrintStream output) {
+    output.printf(
+        "Atomix benchmark: %s '%s', %d concurrent operations, %s keys (%d), %s%n%n",
+        workload,
+        name,
+        concurrency,
+        distribution,
+        keys,
+        Duration.milliseconds(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+    output.printf(
+        "%-12s %12s %8s %12s %10s %10s %10s %10s %10s%n",
+        "operation",
+        "count",
+        "errors",
+        "ops/sec",
+        "p50 (ms)",
+        "p90 (ms)",
+        "p99 (ms)",
+        "p99.9 (ms)",
+        "max (ms)");
+    operations.forEach(
+        (operation, stats) -> {
+          final Map<String, Double> latency = stats.getLatencyMillis();
+          output.printf(
+              "%-12s %12d %8d %12.1f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+              operation,
+              stats.getCount(),
+              stats.getErrors(),
+              throughput(stats.getCount()),
+              latency.get("p50"),
+              latency.get("p90"),
+              latency.get("p99"),
+              latency.get("p99.9"),
+              latency.get("max"));
+        });
+    output.printf("%n%-12s %12d %8s %12.1f%n", "total", getTotalOperations(), "", getThroughput());
+  }
+
+  public static class OperationStats {
+    private final Histogram histogram = new ConcurrentHistogram(3);
+    private final LongAdder errors = new LongAdder();
+
+    void record(long latencyNanos, boolean failed) {
+      histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+      if (failed) {
+        errors.increment();
+      }
+    }
+
+    @JsonProperty
+    public long getCount() {
+      return histogram.getTotalCount();
+    }
+
+    @JsonProperty
+    public long getErrors() {
+      return errors.sum();
+    }
+
+    @JsonProperty
+    public Map<String, Double> getLatencyMillis() {
+      final ImmutableMap.Builder<String, Double> latency = ImmutableMap.builder();
+      latency.put("mean", histogram.getMean() / 1000.0);
+      for (double percentile : PERCENTILES) {
+        final String key = "p" + (percentile % 1 == 0 ? (int) percentile : percentile);
+        latency.put(key, histogram.getValueAtPercentile(percentile) / 1000.0);
+      }
+      latency.put("max", histogram.getMaxValue() / 1000.0);
+      return latency.build();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.bench;
+
+import com.google.common.collect.ImmutableSet;
+import io.atomix.core.Atomix;
+import io.atomix.core.counter.AsyncAtomicCounter;
+import io.atomix.core.map.AsyncAtomicMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/** Primitives which can be driven by the {@code atomix-bench} command. */
+public enum BenchWorkload {
+  MAP(ImmutableSet.of("get", "put", "remove")) {
+    @Override
+    public Target open(Atomix atomix, String name, String value) {
+      final AsyncAtomicMap<String, String> map =
+          atomix.<String, String>getAtomicMap(name).async();
+      return (operation, key) -> {
+        switch (operation) {
+          case "get":
+            return map.get(key);
+          case "put":
+            return map.put(key, value);
+          default:
+            return map.remove(key);
+        }
+      };
+    }
+  },
+  COUNTER(ImmutableSet.of("get", "increment")) {
+    @Override
+    public Target open(Atomix atomix, String name, String value) {
+      final AsyncAtomicCounter counter = atomix.getAtomicCounter(name).async();
+      return (operation, key) ->
+          "get".equals(operation) ? counter.get() : counter.incrementAndGet();
+    }
+  };
+
+  /** An opened primitive against which operations are issued */
+  @FunctionalInterface
+  public interface Target {
+    CompletableFuture<?> execute(String operation, String key);
+  }
+
+  private final Set<String> operations;
+
+  BenchWorkload(Set<String> operations) {
+    this.operations = operations;
+  }
+
+  public Set<String> getOperations() {
+    return operations;
+  }
+
+  /**
+   * Open the primitive under test.
+   *
+   * @param atomix Started Atomix instance
+   * @param name Primitive name
+   * @param value Value written by write operations
+   * @return target to issue operations against
+   */
+  public abstract Target open(Atomix atomix, String name, String value);
+}
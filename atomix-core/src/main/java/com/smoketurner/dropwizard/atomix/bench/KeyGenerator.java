@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Generates the keys accessed by a benchmark workload. */
+public abstract class KeyGenerator {
+
+  /**
+   * Every key is equally likely.
+   *
+   * @param keys Number of distinct keys
+   * @return key generator
+   */
+  public static KeyGenerator uniform(final int keys) {
+    return new KeyGenerator() {
+      @Override
+      public int next() {
+        return ThreadLocalRandom.current().nextInt(keys);
+      }
+    };
+  }
+
+  /**
+   * Lower numbered keys are accessed more often, following a Zipfian distribution.
+   *
+   * @param keys Number of distinct keys
+   * @param theta Skew of the distribution, between 0 (exclusive) and 1 (exclusive)
+   * @return key generator
+   */
+  public static KeyGenerator zipfian(final int keys, final double theta) {
+    if (theta <= 0 || theta >= 1) {
+      throw new IllegalArgumentException("Zipfian exponent must be between 0 and 1 (exclusive)");
+    }
+    return new ZipfianKeyGenerator(keys, theta);
+  }
+
+  /** @return the next key, between 0 (inclusive) and the number of keys (exclusive) */
+  public abstract int next();
+
+  /**
+   * Zipfian generator from "Quickly Generating Billion-Record Synthetic Databases" (Gray et al.),
+   * which samples in constant time once zeta(n) has been computed.
+   */
+  private static final class ZipfianKeyGenerator extends KeyGenerator {
+    private final int keys;
+    private final double theta;
+    private final double alpha;
+    private final double zetan;
+    private final double eta;
+
+    ZipfianKeyGenerator(int keys, double theta) {
+      this.keys = keys;
+      this.theta = theta;
+      this.alpha = 1.0 / (1.0 - theta);
+      this.zetan = zeta(keys, theta);
+      this.eta = (1 - Math.pow(2.0 / keys, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+    }
+
+    @Override
+    public int next() {
+      final double u = ThreadLocalRandom.current().nextDouble();
+      final double uz = u * zetan;
+      if (uz < 1.0) {
+        return 0;
+      }
+      if (uz < 1.0 + Math.pow(0.5, theta)) {
+        return Math.min(1, keys - 1);
+      }
+      final int key = (int) (keys * Math.pow(eta * u - eta + 1, alpha));
+      return Math.min(key, keys - 1);
+    }
+
+    private static double zeta(int n, double theta) {
+      double sum = 0;
+      for (int i = 1; i <= n; i++) {
+        sum += 1 / Math.pow(i, theta);
+      }
+      return sum;
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.bulkhead;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.dropwizard.atomix.primitive.OperationInterceptor;
+import com.smoketurner.dropwizard.atomix.primitive.PrimitiveOperation;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of in-flight operations against a single primitive. Operations beyond the
+ * limit wait in a bounded queue (without holding a thread) and are started as earlier operations
+ * complete, in order and ahead of new callers; once the queue is also full, operations fail fast
+ * with a {@link BulkheadFullException}. Queued operations whose caller has already given up on
+ * them, for example after a timeout, are skipped rather than run.
+ */
+public class Bulkhead implements OperationInterceptor {
+
+  private final String name;
+  private final int maxConcurrentOperations;
+  private final int maxQueuedOperations;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicInteger drainRequests = new AtomicInteger();
+  private final Queue<Pending<?>> queue = new ConcurrentLinkedQueue<>();
+  private final Meter rejected;
+
+  /**
+   * Constructor
+   *
+   * @param name Primitive name
+   * @param maxConcurrentOperations Maximum number of in-flight operations
+   * @param maxQueuedOperations Maximum number of operations waiting for a permit
+   * @param metrics Metric registry
+   */
+  public Bulkhead(
+      final String name,
+      final int maxConcurrentOperations,
+      final int maxQueuedOperations,
+      final MetricRegistry metrics) {
+    this.name = Objects.requireNonNull(name);
+    this.maxConcurrentOperations = maxConcurrentOperations;
+    this.maxQueuedOperations = maxQueuedOperations;
+
+    final String prefix = MetricRegistry.name("atomix", "bulkhead", name);
+    metrics.gauge(MetricRegistry.name(prefix, "in-flight"), () -> (Gauge<Integer>) inFlight::get);
+    metrics.gauge(MetricRegistry.name(prefix, "queued"), () -> (Gauge<Integer>) queued::get);
+    this.rejected = metrics.meter(MetricRegistry.name(prefix, "rejected"));
+  }
+
+  @Override
+  public <T> CompletableFuture<T> intercept(
+      final PrimitiveOperation operation, final Supplier<CompletableFuture<T>> invocation) {
+    // only take a free permit directly when nothing is waiting, so queued operations are not
+    // starved by new callers for as long as the load lasts
+    if ((maxQueuedOperations == 0 || queued.get() == 0) && tryAcquire()) {
+      return run(invocation);
+    }
+
+    if (queued.incrementAndGet() > maxQueuedOperations) {
+      queued.decrementAndGet();
+      rejected.mark();
+      final CompletableFuture<T> future = new CompletableFuture<>();
+      future.completeExceptionally(new BulkheadFullException(name));
+      return future;
+    }
+
+    final Pending<T> pending = new Pending<>(invocation);
+    queue.add(pending);
+
+    // a permit may have been released before the operation was queued
+    drain();
+    return pending.future;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public int getQueued() {
+    return queued.get();
+  }
+
+  private <T> CompletableFuture<T> run(final Supplier<CompletableFuture<T>> invocation) {
+    CompletableFuture<T> future;
+    try {
+      future = invocation.get();
+    } catch (RuntimeException e) {
+      future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+    }
+    // release the permit from a dependent nobody else holds, so cancelling the returned future
+    // cannot skip the release
+    future.whenComplete(
+        (result, error) -> {
+          inFlight.decrementAndGet();
+          drain();
+        });
+    return future;
+  }
+
+  private void drain() {
+    // an operation that completes synchronously releases its permit, and so drains again, from
+    // inside pending.start(); only the first caller drains and the others just make it loop again,
+    // so a queue of failing operations is run iteratively instead of recursing through start()
+    if (drainRequests.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      while (!queue.isEmpty() && tryAcquire()) {
+        // only one thread drains at a time, so the queue cannot have been emptied since the check
+        final Pending<?> pending = queue.poll();
+        queued.decrementAndGet();
+        if (pending.future.isDone()) {
+          // the caller gave up (e.g. timed out) while the operation was queued
+          inFlight.decrementAndGet();
+          continue;
+        }
+        pending.start();
+      }
+      missed = drainRequests.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private boolean tryAcquire() {
+    while (true) {
+      final int current = inFlight.get();
+      if (current >= maxConcurrentOperations) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /** An operation waiting for a permit, completed with the result of the operation once run */
+  private final class Pending<T> {
+    private final Supplier<CompletableFuture<T>> invocation;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+
+    Pending(Supplier<CompletableFuture<T>> invocation) {
+      this.invocation = invocation;
+    }
+
+    void start() {
+      run(invocation)
+          .whenComplete(
+              (result, error) -> {
+                if (error != null) {
+                  future.completeExceptionally(error);
+                } else {
+                  future.complete(result);
+                }
+              });
+    }
+  }
+}
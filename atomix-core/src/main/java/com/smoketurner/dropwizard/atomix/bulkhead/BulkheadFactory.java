@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.bulkhead;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.validation.constraints.Min;
+
+public class BulkheadFactory {
+
+  @Min(1)
+  private int maxConcurrentOperations = 64;
+
+  @Min(0)
+  private int maxQueuedOperations = 0;
+
+  @JsonProperty
+  public int getMaxConcurrentOperations() {
+    return maxConcurrentOperations;
+  }
+
+  @JsonProperty
+  public void setMaxConcurrentOperations(int operations) {
+    this.maxConcurrentOperations = operations;
+  }
+
+  @JsonProperty
+  public int getMaxQueuedOperations() {
+    return maxQueuedOperations;
+  }
+
+  @JsonProperty
+  public void setMaxQueuedOperations(int operations) {
+    this.maxQueuedOperations = operations;
+  }
+
+  @JsonIgnore
+  public Bulkhead build(String name, MetricRegistry metrics) {
+    return new Bulkhead(name, maxConcurrentOperations, maxQueuedOperations, metrics);
+  }
+}
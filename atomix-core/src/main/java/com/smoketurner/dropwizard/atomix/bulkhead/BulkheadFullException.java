@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.bulkhead;
+
+import java.util.concurrent.RejectedExecutionException;
+
+public class BulkheadFullException extends RejectedExecutionException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructor
+   *
+   * @param name Name of the primitive whose bulkhead is full
+   */
+  public BulkheadFullException(String name) {
+    super(String.format("Bulkhead for primitive '%s' is full", name));
+  }
+}
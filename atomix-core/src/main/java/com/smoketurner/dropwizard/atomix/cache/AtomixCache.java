@@ -0,0 +1,363 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.cache;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+import io.atomix.core.Atomix;
+import io.atomix.core.map.AsyncAtomicMap;
+import io.atomix.primitive.protocol.ProxyProtocol;
+import io.atomix.utils.time.Versioned;
+import io.dropwizard.util.Duration;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A cache of byte array values stored in a partitioned Atomix map, so capacity grows with the
+ * number of nodes in the partition group. Recently read and written values are also kept in a
+ * size-bounded local cache, which is not invalidated by writes on other nodes and so may serve a
+ * value for up to its (short) TTL after it has changed elsewhere.
+ */
+public class AtomixCache {
+
+  private static final byte UNCOMPRESSED = 0;
+  private static final byte COMPRESSED = 1;
+
+  private final Supplier<CompletableFuture<AsyncAtomicMap<String, byte[]>>> opener;
+  private final AtomicReference<CompletableFuture<AsyncAtomicMap<String, byte[]>>> mapRef =
+      new AtomicReference<>();
+  private final java.time.Duration ttl;
+  private final Cache<String, byte[]> localCache;
+  private final long compressionThreshold;
+  private final int batchSize;
+  private final Meter localHits;
+  private final Meter remoteHits;
+  private final Meter misses;
+  private final Meter compressed;
+
+  /**
+   * Constructor
+   *
+   * @param atomix Atomix instance
+   * @param mapName Name of the map storing cached values
+   * @param protocol Partitioned protocol used to store the map
+   * @param ttl Time after which values are evicted from the cluster
+   * @param localCacheSize Maximum number of values cached locally
+   * @param localTtl Time after which values are evicted from the local cache
+   * @param compressionThreshold Values larger than this number of bytes are compressed
+   * @param batchSize Maximum number of keys sent in a single bulk request
+   * @param metrics Metric registry
+   */
+  public AtomixCache(
+      final Atomix atomix,
+      final String mapName,
+      final ProxyProtocol protocol,
+      final Duration ttl,
+      final long localCacheSize,
+      final Duration localTtl,
+      final long compressionThreshold,
+      final int batchSize,
+      final MetricRegistry metrics) {
+    this(
+        opener(atomix, mapName, protocol),
+        mapName,
+        ttl,
+        localCacheSize,
+        localTtl,
+        compressionThreshold,
+        batchSize,
+        metrics);
+  }
+
+  AtomixCache(
+      final Supplier<CompletableFuture<AsyncAtomicMap<String, byte[]>>> opener,
+      final String mapName,
+      final Duration ttl,
+      final long localCacheSize,
+      final Duration localTtl,
+      final long compressionThreshold,
+      final int batchSize,
+      final MetricRegistry metrics) {
+    Objects.requireNonNull(mapName);
+
+    this.opener = Objects.requireNonNull(opener);
+    this.ttl = java.time.Duration.ofNanos(ttl.toNanoseconds());
+    this.localCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(localCacheSize)
+            .expireAfterWrite(
+                Math.min(localTtl.toNanoseconds(), ttl.toNanoseconds()), TimeUnit.NANOSECONDS)
+            .build();
+    this.compressionThreshold = compressionThreshold;
+    this.batchSize = batchSize;
+
+    final String prefix = MetricRegistry.name("atomix", "cache", mapName);
+    this.localHits = metrics.meter(MetricRegistry.name(prefix, "local-hits"));
+    this.remoteHits = metrics.meter(MetricRegistry.name(prefix, "remote-hits"));
+    this.misses = metrics.meter(MetricRegistry.name(prefix, "misses"));
+    this.compressed = metrics.meter(MetricRegistry.name(prefix, "compressed"));
+  }
+
+  /**
+   * Get a value from the cache.
+   *
+   * @param key Cache key
+   * @return the cached value, or empty if the key is not cached
+   */
+  public CompletableFuture<Optional<byte[]>> get(final String key) {
+    final byte[] local = localCache.getIfPresent(key);
+    if (local != null) {
+      localHits.mark();
+      return CompletableFuture.completedFuture(Optional.of(local.clone()));
+    }
+
+    return map()
+        .thenCompose(m -> m.get(key))
+        .thenApply(
+            versioned -> {
+              if (versioned == null) {
+                misses.mark();
+                return Optional.empty();
+              }
+              remoteHits.mark();
+              final byte[] value = decode(versioned.value());
+              localCache.put(key, value);
+              return Optional.of(value.clone());
+            });
+  }
+
+  /**
+   * Get several values from the cache. Keys missing from the local cache are requested in batches
+   * of at most {@code batchSize} keys, each sent as a single request to every partition rather than
+   * one request per key.
+   *
+   * @param keys Cache keys
+   * @return the cached values, without entries for keys which are not cached
+   */
+  public CompletableFuture<Map<String, byte[]>> getAll(final Iterable<String> keys) {
+    final Map<String, byte[]> values = new LinkedHashMap<>();
+    final List<String> remote = new ArrayList<>();
+    for (String key : keys) {
+      final byte[] local = localCache.getIfPresent(key);
+      if (local != null) {
+        localHits.mark();
+        values.put(key, local.clone());
+      } else {
+        remote.add(key);
+      }
+    }
+    if (remote.isEmpty()) {
+      return CompletableFuture.completedFuture(values);
+    }
+
+    return map()
+        .thenCompose(
+            m -> {
+              final List<CompletableFuture<Map<String, Versioned<byte[]>>>> batches =
+                  new ArrayList<>();
+              for (List<String> batch : Iterables.partition(remote, batchSize)) {
+                batches.add(m.getAllPresent(batch));
+              }
+              return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0]))
+                  .thenApply(
+                      ignored -> {
+                        final Map<String, byte[]> found = new HashMap<>();
+                        for (CompletableFuture<Map<String, Versioned<byte[]>>> batch : batches) {
+                          batch.join().forEach((key, v) -> found.put(key, decode(v.value())));
+                        }
+                        return found;
+                      });
+            })
+        .thenApply(
+            found -> {
+              remoteHits.mark(found.size());
+              misses.mark(remote.size() - found.size());
+              found.forEach(
+                  (key, value) -> {
+                    localCache.put(key, value);
+                    values.put(key, value.clone());
+                  });
+              return values;
+            });
+  }
+
+  /**
+   * Put a value into the cache.
+   *
+   * @param key Cache key
+   * @param value Value to cache
+   * @return future completed once the value has been stored in the cluster
+   */
+  public CompletableFuture<Void> put(final String key, final byte[] value) {
+    final byte[] copy = value.clone();
+    localCache.put(key, copy);
+    return map().thenCompose(m -> m.put(key, encode(copy), ttl)).thenApply(v -> null);
+  }
+
+  /**
+   * Put several values into the cache. The map has no multi-key write, so values are written in
+   * batches of at most {@code batchSize} concurrent puts, which the partitions' sessions pipeline,
+   * rather than all at once.
+   *
+   * @param values Values to cache
+   * @return future completed once every value has been stored in the cluster
+   */
+  public CompletableFuture<Void> putAll(final Map<String, byte[]> values) {
+    final Map<String, byte[]> copies = new LinkedHashMap<>();
+    values.forEach((key, value) -> copies.put(key, value.clone()));
+    localCache.putAll(copies);
+
+    return map()
+        .thenCompose(
+            m -> {
+              CompletableFuture<Void> result = CompletableFuture.completedFuture(null);
+              for (List<Map.Entry<String, byte[]>> batch :
+                  Iterables.partition(copies.entrySet(), batchSize)) {
+                result = result.thenCompose(v -> putBatch(m, batch));
+              }
+              return result;
+            });
+  }
+
+  /**
+   * Remove a value from the cache.
+   *
+   * @param key Cache key
+   * @return future completed once the value has been removed from the cluster
+   */
+  public CompletableFuture<Void> invalidate(final String key) {
+    localCache.invalidate(key);
+    return map().thenCompose(m -> m.remove(key)).thenApply(v -> null);
+  }
+
+  /**
+   * Atomix is not started until after the application has been run, so the map is opened on first
+   * use. Only a successfully opened map is kept; a failure is retried by the next operation.
+   */
+  private CompletableFuture<AsyncAtomicMap<String, byte[]>> map() {
+    final CompletableFuture<AsyncAtomicMap<String, byte[]>> current = mapRef.get();
+    if (current != null && !current.isCompletedExceptionally()) {
+      return current;
+    }
+
+    final CompletableFuture<AsyncAtomicMap<String, byte[]>> opening = new CompletableFuture<>();
+    if (!mapRef.compareAndSet(current, opening)) {
+      return map();
+    }
+
+    try {
+      opener
+          .get()
+          .whenComplete(
+              (map, error) -> {
+                if (error != null) {
+                  opening.completeExceptionally(error);
+                } else {
+                  opening.complete(map);
+                }
+              });
+    } catch (RuntimeException e) {
+      opening.completeExceptionally(e);
+    }
+    return opening;
+  }
+
+  private static Supplier<CompletableFuture<AsyncAtomicMap<String, byte[]>>> opener(
+      final Atomix atomix, final String mapName, final ProxyProtocol protocol) {
+    Objects.requireNonNull(atomix);
+    Objects.requireNonNull(mapName);
+    Objects.requireNonNull(protocol);
+    return () ->
+        atomix
+            .<String, byte[]>atomicMapBuilder(mapName)
+            .withProtocol(protocol)
+            .buildAsync()
+            .thenApply(map -> map.async());
+  }
+
+  private CompletableFuture<Void> putBatch(
+      final AsyncAtomicMap<String, byte[]> m, final List<Map.Entry<String, byte[]>> batch) {
+    final CompletableFuture<?>[] puts = new CompletableFuture<?>[batch.size()];
+    for (int i = 0; i < puts.length; i++) {
+      final Map.Entry<String, byte[]> entry = batch.get(i);
+      puts[i] = m.put(entry.getKey(), encode(entry.getValue()), ttl);
+    }
+    return CompletableFuture.allOf(puts);
+  }
+
+  private byte[] encode(final byte[] value) {
+    if (value.length <= compressionThreshold) {
+      return prepend(UNCOMPRESSED, value);
+    }
+
+    compressed.mark();
+    final ByteArrayOutputStream output = new ByteArrayOutputStream(value.length / 2 + 1);
+    output.write(COMPRESSED);
+    try (OutputStream gzip = new GZIPOutputStream(output)) {
+      gzip.write(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return output.toByteArray();
+  }
+
+  private static byte[] decode(final byte[] value) {
+    if (value.length == 0 || value[0] == UNCOMPRESSED) {
+      return value.length == 0 ? value : Arrays.copyOfRange(value, 1, value.length);
+    }
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream(value.length * 2);
+    try (InputStream gzip =
+        new GZIPInputStream(new ByteArrayInputStream(value, 1, value.length - 1))) {
+      final byte[] buffer = new byte[8192];
+      int read;
+      while ((read = gzip.read(buffer)) != -1) {
+        output.write(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return output.toByteArray();
+  }
+
+  private static byte[] prepend(final byte flag, final byte[] value) {
+    final byte[] result = new byte[value.length + 1];
+    result[0] = flag;
+    System.arraycopy(value, 0, result, 1, value.length);
+    return result;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.cache;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.atomix.core.Atomix;
+import io.atomix.primitive.Replication;
+import io.atomix.protocols.backup.MultiPrimaryProtocol;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.NotEmpty;
+
+public class CacheFactory {
+
+  @NotEmpty private String mapName = "atomix-cache";
+
+  /** Primary-backup partition group storing the map, or the default group when not set */
+  @Nullable private String partitionGroup;
+
+  @Min(0)
+  @Max(6)
+  private int backups = 1;
+
+  @NotNull private Replication replication = Replication.ASYNCHRONOUS;
+
+  @NotNull private Duration ttl = Duration.minutes(10);
+
+  @Min(0)
+  private long localCacheSize = 10000;
+
+  @NotNull private Duration localTtl = Duration.seconds(5);
+
+  @NotNull private Size compressionThreshold = Size.kilobytes(1);
+
+  @Min(1)
+  private int batchSize = 100;
+
+  /** Maximum time a cached response lookup waits for the cluster before it is treated as a miss */
+  @NotNull private Duration lookupTimeout = Duration.milliseconds(100);
+
+  /** Request headers included in the key of every cached response */
+  @NotNull private List<String> varyHeaders = Arrays.asList("Accept", "Accept-Language");
+
+  @JsonProperty
+  public String getMapName() {
+    return mapName;
+  }
+
+  @JsonProperty
+  public void setMapName(String name) {
+    this.mapName = name;
+  }
+
+  @JsonProperty
+  @Nullable
+  public String getPartitionGroup() {
+    return partitionGroup;
+  }
+
+  @JsonProperty
+  public void setPartitionGroup(@Nullable String group) {
+    this.partitionGroup = group;
+  }
+
+  @JsonProperty
+  public int getBackups() {
+    return backups;
+  }
+
+  @JsonProperty
+  public void setBackups(int backups) {
+    this.backups = backups;
+  }
+
+  @JsonProperty
+  public Replication getReplication() {
+    return replication;
+  }
+
+  @JsonProperty
+  public void setReplication(Replication replication) {
+    this.replication = replication;
+  }
+
+  @JsonProperty
+  public Duration getTtl() {
+    return ttl;
+  }
+
+  @JsonProperty
+  public void setTtl(Duration ttl) {
+    this.ttl = ttl;
+  }
+
+  @JsonProperty
+  public long getLocalCacheSize() {
+    return localCacheSize;
+  }
+
+  @JsonProperty
+  public void setLocalCacheSize(long size) {
+    this.localCacheSize = size;
+  }
+
+  @JsonProperty
+  public Duration getLocalTtl() {
+    return localTtl;
+  }
+
+  @JsonProperty
+  public void setLocalTtl(Duration ttl) {
+    this.localTtl = ttl;
+  }
+
+  @JsonProperty
+  public Size getCompressionThreshold() {
+    return compressionThreshold;
+  }
+
+  @JsonProperty
+  public void setCompressionThreshold(Size threshold) {
+    this.compressionThreshold = threshold;
+  }
+
+  @JsonProperty
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  @JsonProperty
+  public void setBatchSize(int size) {
+    this.batchSize = size;
+  }
+
+  @JsonProperty
+  public Duration getLookupTimeout() {
+    return lookupTimeout;
+  }
+
+  @JsonProperty
+  public void setLookupTimeout(Duration timeout) {
+    this.lookupTimeout = timeout;
+  }
+
+  @JsonProperty
+  public List<String> getVaryHeaders() {
+    return varyHeaders;
+  }
+
+  @JsonProperty
+  public void setVaryHeaders(List<String> headers) {
+    this.varyHeaders = headers;
+  }
+
+  @JsonIgnore
+  public AtomixCache build(Atomix atomix, MetricRegistry metrics) {
+    final MultiPrimaryProtocol.Builder protocol =
+        partitionGroup == null
+            ? MultiPrimaryProtocol.builder()
+            : MultiPrimaryProtocol.builder(partitionGroup);
+    return new AtomixCache(
+        atomix,
+        mapName,
+        protocol.withBackups(backups).withReplication(replication).build(),
+        ttl,
+        localCacheSize,
+        localTtl,
+        compressionThreshold.toBytes(),
+        batchSize,
+        metrics);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSortedSet;
+import io.dropwizard.util.Duration;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import javax.ws.rs.GET;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+
+public class ResponseCacheFeature implements DynamicFeature {
+
+  private final AtomixCache cache;
+  private final Collection<String> varyHeaders;
+  private final Duration lookupTimeout;
+  private final ObjectMapper mapper;
+
+  /**
+   * Constructor
+   *
+   * @param cache Cache storing responses
+   * @param varyHeaders Request headers included in the key of every cached response
+   * @param lookupTimeout Maximum time to wait for the cache before treating a lookup as a miss
+   * @param mapper Object mapper used to serialize responses
+   */
+  public ResponseCacheFeature(
+      final AtomixCache cache,
+      final Collection<String> varyHeaders,
+      final Duration lookupTimeout,
+      final ObjectMapper mapper) {
+    this.cache = Objects.requireNonNull(cache);
+    this.varyHeaders = Objects.requireNonNull(varyHeaders);
+    this.lookupTimeout = Objects.requireNonNull(lookupTimeout);
+    this.mapper = Objects.requireNonNull(mapper);
+  }
+
+  @Override
+  public void configure(final ResourceInfo resourceInfo, final FeatureContext context) {
+    final Method method = resourceInfo.getResourceMethod();
+    final CachedResponse annotation = method.getAnnotation(CachedResponse.class);
+    if (annotation == null || !method.isAnnotationPresent(GET.class)) {
+      return;
+    }
+
+    // sort the headers so the key does not depend on the order they were configured in
+    final ImmutableSortedSet<String> headers =
+        ImmutableSortedSet.orderedBy(String.CASE_INSENSITIVE_ORDER)
+            .addAll(varyHeaders)
+            .addAll(Arrays.asList(annotation.vary()))
+            .build();
+    context.register(new ResponseCacheFilter(cache, headers, lookupTimeout, mapper));
+  }
+}
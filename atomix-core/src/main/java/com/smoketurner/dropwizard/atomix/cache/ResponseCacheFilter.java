@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.smoketurner.dropwizard.atomix.jersey.StoredResponse;
+import io.dropwizard.util.Duration;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Priority(Priorities.USER)
+public class ResponseCacheFilter
+    implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+  public static final String CACHE_HEADER = "Atomix-Cache";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResponseCacheFilter.class);
+  private static final String KEY_PROPERTY = ResponseCacheFilter.class.getName() + ".key";
+  private static final String STATUS_PROPERTY = ResponseCacheFilter.class.getName() + ".status";
+  private static final List<String> PERSONALIZED_HEADERS =
+      ImmutableList.of(HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE);
+
+  private final AtomixCache cache;
+  private final Set<String> varyHeaders;
+  private final Duration lookupTimeout;
+  private final ObjectMapper mapper;
+
+  /**
+   * Constructor
+   *
+   * @param cache Cache storing responses
+   * @param varyHeaders Request headers included in the cache key, in a case-insensitive set
+   * @param lookupTimeout Maximum time to wait for the cache before treating a lookup as a miss
+   * @param mapper Object mapper used to serialize responses
+   */
+  public ResponseCacheFilter(
+      final AtomixCache cache,
+      final Set<String> varyHeaders,
+      final Duration lookupTimeout,
+      final ObjectMapper mapper) {
+    this.cache = Objects.requireNonNull(cache);
+    this.varyHeaders = Objects.requireNonNull(varyHeaders);
+    this.lookupTimeout = Objects.requireNonNull(lookupTimeout);
+    this.mapper = Objects.requireNonNull(mapper);
+  }
+
+  @Override
+  public void filter(final ContainerRequestContext request) throws IOException {
+    if (isPersonalized(request)) {
+      return;
+    }
+    final String key = key(request);
+
+    // the cache is an optimization, so a slow or unavailable cluster is treated as a miss
+    Optional<byte[]> cached = Optional.empty();
+    try {
+      cached = cache.get(key).get(lookupTimeout.getQuantity(), lookupTimeout.getUnit());
+    } catch (TimeoutException e) {
+      LOGGER.debug("Timed out reading cached response for {} after {}", key, lookupTimeout);
+    } catch (ExecutionException e) {
+      LOGGER.warn("Unable to read cached response for {}", key, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+
+    if (cached.isPresent()) {
+      final StoredResponse stored = mapper.readValue(cached.get(), StoredResponse.class);
+      request.abortWith(stored.replay().header(CACHE_HEADER, "HIT").build());
+    } else {
+      request.setProperty(KEY_PROPERTY, key);
+    }
+  }
+
+  @Override
+  public void filter(final ContainerRequestContext request, final ContainerResponseContext response)
+      throws IOException {
+    final String key = (String) request.getProperty(KEY_PROPERTY);
+    if (key == null) {
+      return;
+    }
+    response.getHeaders().putSingle(CACHE_HEADER, "MISS");
+
+    if (response.getStatus() != Response.Status.OK.getStatusCode()
+        || !response.hasEntity()
+        || isPrivate(response.getHeaderString(HttpHeaders.CACHE_CONTROL))
+        || hasCookies(response.getHeaders())) {
+      request.removeProperty(KEY_PROPERTY);
+      return;
+    }
+
+    // the body is only available once the entity has been written
+    request.setProperty(STATUS_PROPERTY, response.getStatus());
+  }
+
+  @Override
+  public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+    final String key = (String) context.getProperty(KEY_PROPERTY);
+    final Integer status = (Integer) context.getProperty(STATUS_PROPERTY);
+    if (key == null || status == null) {
+      context.proceed();
+      return;
+    }
+
+    final OutputStream original = context.getOutputStream();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    context.setOutputStream(body);
+    try {
+      context.proceed();
+    } finally {
+      context.setOutputStream(original);
+    }
+    body.writeTo(original);
+
+    // cookies may also be added after the response filter has run, e.g. by a writer interceptor
+    if (hasCookies(context.getHeaders())) {
+      return;
+    }
+
+    final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>(context.getHeaders());
+    headers.remove(CACHE_HEADER);
+
+    final byte[] value =
+        mapper.writeValueAsBytes(
+            new StoredResponse(
+                status, StoredResponse.copyHeaders(headers), body.toByteArray()));
+
+    // don't hold up the response while the value is replicated
+    cache
+        .put(key, value)
+        .whenComplete(
+            (v, error) -> {
+              if (error != null) {
+                LOGGER.warn("Unable to cache response for {}", key, error);
+              }
+            });
+  }
+
+  private String key(final ContainerRequestContext request) {
+    final StringBuilder key = new StringBuilder("response:");
+    key.append(request.getUriInfo().getRequestUri());
+    for (String header : varyHeaders) {
+      key.append('\n').append(header).append(':');
+      key.append(Strings.nullToEmpty(request.getHeaderString(header)));
+    }
+    return key.toString();
+  }
+
+  /**
+   * Requests carrying credentials get responses specific to the caller, so they are only cached
+   * when the credentials are part of the cache key.
+   */
+  private boolean isPersonalized(final ContainerRequestContext request) {
+    for (String header : PERSONALIZED_HEADERS) {
+      if (!varyHeaders.contains(header) && request.getHeaderString(header) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Responses setting cookies (such as a session) must never be replayed to other clients */
+  private static boolean hasCookies(final MultivaluedMap<String, Object> headers) {
+    return headers.keySet().stream().anyMatch(HttpHeaders.SET_COOKIE::equalsIgnoreCase);
+  }
+
+  private static boolean isPrivate(final String cacheControl) {
+    if (Strings.isNullOrEmpty(cacheControl)) {
+      return false;
+    }
+    final String value = cacheControl.toLowerCase(Locale.ENGLISH);
+    return value.contains("no-store") || value.contains("private");
+  }
+}
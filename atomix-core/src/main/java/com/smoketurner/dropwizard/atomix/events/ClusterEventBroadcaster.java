@@ -0,0 +1,407 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.events;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableSet;
+import io.atomix.cluster.messaging.Subscription;
+import io.atomix.core.Atomix;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fans out {@code ClusterEventService} topics to Server-Sent Event clients. Each topic is
+ * subscribed to at most once per node, on the first client connection, regardless of how many
+ * clients are connected. Events are coalesced into batches of up to {@code maxBatchSize} events or
+ * {@code maxBatchDelay}, whichever comes first, and every batch is sent to clients as a single JSON
+ * array. Each client has its own bounded buffer of batches; when a slow client falls behind, its
+ * oldest batches are dropped rather than holding up other clients.
+ *
+ * <p>Writing to a client blocks until the event has been flushed, so events are only enqueued on
+ * the thread which receives and batches them and are written by a separate sender pool, one event
+ * per task so clients sharing the pool take turns. Every connected client is checked periodically:
+ * clients which have disconnected are removed, and a client whose write has been blocked for
+ * longer than {@code writeTimeout} is closed. The blocked sender thread cannot be interrupted and
+ * only returns once the server gives up on the connection, so the pool is given one extra thread
+ * until it does, and other clients keep being written to while it is stuck.
+ */
+public class ClusterEventBroadcaster implements Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusterEventBroadcaster.class);
+
+  private static final int IDLE = 0;
+  private static final int WRITING = 1;
+  private static final int STALLED = 2;
+
+  private final Atomix atomix;
+  private final Set<String> topics;
+  private final int maxBatchSize;
+  private final Duration maxBatchDelay;
+  private final int subscriberBufferSize;
+  private final Duration writeTimeout;
+  private final ScheduledExecutorService scheduler;
+  private final ThreadPoolExecutor sender;
+  private final int senderThreads;
+  private final MetricRegistry metrics;
+  private final ConcurrentMap<String, TopicStream> streams = new ConcurrentHashMap<>();
+
+  @GuardedBy("this")
+  private int stalledWrites;
+
+  /**
+   * Constructor
+   *
+   * @param atomix Atomix instance
+   * @param topics Topics which clients may subscribe to
+   * @param maxBatchSize Maximum number of events in a batch
+   * @param maxBatchDelay Maximum time an event waits for its batch to be sent
+   * @param subscriberBufferSize Maximum number of batches buffered for each client
+   * @param writeTimeout Maximum time a write to a client may block before the client is closed
+   * @param scheduler Scheduler used to receive events, flush batches and check clients
+   * @param sender Executor used to write events to clients, grown while writes are stalled
+   * @param metrics Metric registry
+   */
+  public ClusterEventBroadcaster(
+      final Atomix atomix,
+      final Set<String> topics,
+      final int maxBatchSize,
+      final Duration maxBatchDelay,
+      final int subscriberBufferSize,
+      final Duration writeTimeout,
+      final ScheduledExecutorService scheduler,
+      final ThreadPoolExecutor sender,
+      final MetricRegistry metrics) {
+    this.atomix = Objects.requireNonNull(atomix);
+    this.topics = ImmutableSet.copyOf(topics);
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchDelay = Objects.requireNonNull(maxBatchDelay);
+    this.subscriberBufferSize = subscriberBufferSize;
+    this.writeTimeout = Objects.requireNonNull(writeTimeout);
+    this.scheduler = Objects.requireNonNull(scheduler);
+    this.sender = Objects.requireNonNull(sender);
+    this.senderThreads = sender.getCorePoolSize();
+    this.metrics = Objects.requireNonNull(metrics);
+
+    metrics.gauge(
+        MetricRegistry.name("atomix", "events", "stalled-writes"),
+        () -> (Gauge<Integer>) this::getStalledWrites);
+  }
+
+  public boolean isTopic(final String topic) {
+    return topics.contains(topic);
+  }
+
+  /**
+   * Register a client for a topic.
+   *
+   * @param topic Topic to subscribe to
+   * @param sink Client event sink
+   * @param sse Server-Sent Event factory
+   */
+  public void subscribe(final String topic, final SseEventSink sink, final Sse sse) {
+    if (!isTopic(topic)) {
+      throw new IllegalArgumentException(String.format("Unknown topic: %s", topic));
+    }
+    streams.computeIfAbsent(topic, name -> new TopicStream(name, sse)).add(sink);
+  }
+
+  public synchronized int getStalledWrites() {
+    return stalledWrites;
+  }
+
+  /** Replace a sender thread blocked on a stalled client, or retire the replacement */
+  private synchronized void adjustStalledWrites(final int delta) {
+    stalledWrites += delta;
+    final int size = senderThreads + stalledWrites;
+    // the core size may never exceed the maximum size, so the order depends on the direction
+    if (delta > 0) {
+      sender.setMaximumPoolSize(size);
+      sender.setCorePoolSize(size);
+    } else {
+      sender.setCorePoolSize(size);
+      sender.setMaximumPoolSize(size);
+    }
+  }
+
+  @Override
+  public void start() throws Exception {
+    // topics are subscribed to on the first client connection
+  }
+
+  @Override
+  public void stop() throws Exception {
+    streams.values().forEach(TopicStream::close);
+    streams.clear();
+  }
+
+  private final class TopicStream {
+    private final String topic;
+    private final Sse sse;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final CompletableFuture<Subscription> subscription;
+    private final Meter events;
+    private final Meter batches;
+    private final Meter dropped;
+    private final Meter timeouts;
+    private final ScheduledFuture<?> checkTask;
+
+    @GuardedBy("this")
+    private List<Object> pending = new ArrayList<>();
+
+    @GuardedBy("this")
+    @Nullable
+    private ScheduledFuture<?> flushTask;
+
+    TopicStream(String topic, Sse sse) {
+      this.topic = topic;
+      this.sse = sse;
+
+      final String prefix = MetricRegistry.name("atomix", "events", topic);
+      this.events = metrics.meter(MetricRegistry.name(prefix, "events"));
+      this.batches = metrics.meter(MetricRegistry.name(prefix, "batches"));
+      this.dropped = metrics.meter(MetricRegistry.name(prefix, "dropped"));
+      this.timeouts = metrics.meter(MetricRegistry.name(prefix, "timeouts"));
+      metrics.gauge(
+          MetricRegistry.name(prefix, "subscribers"), () -> (Gauge<Integer>) subscribers::size);
+
+      LOGGER.info("Subscribing to cluster event topic: {}", topic);
+      this.subscription =
+          atomix.getEventService().<Object>subscribe(topic, this::onEvent, scheduler);
+      subscription.whenComplete(
+          (result, error) -> {
+            if (error != null) {
+              LOGGER.error("Unable to subscribe to cluster event topic: {}", topic, error);
+            }
+          });
+
+      // clients are otherwise only found to have gone away when an event is sent to them, which
+      // may never happen on a quiet topic
+      final long interval = Math.max(1, writeTimeout.toMilliseconds() / 2);
+      this.checkTask =
+          scheduler.scheduleWithFixedDelay(
+              this::checkSubscribers, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    void add(SseEventSink sink) {
+      subscribers.add(new Subscriber(this, sink));
+    }
+
+    void remove(Subscriber subscriber) {
+      subscribers.remove(subscriber);
+    }
+
+    void close() {
+      subscription.thenAccept(Subscription::close);
+      checkTask.cancel(false);
+      synchronized (this) {
+        if (flushTask != null) {
+          flushTask.cancel(false);
+        }
+      }
+      subscribers.forEach(Subscriber::close);
+      subscribers.clear();
+    }
+
+    private void checkSubscribers() {
+      final long now = System.nanoTime();
+      for (Subscriber subscriber : subscribers) {
+        try {
+          subscriber.check(now);
+        } catch (RuntimeException e) {
+          LOGGER.warn("Unable to check client on {}", topic, e);
+        }
+      }
+    }
+
+    private void onEvent(Object message) {
+      events.mark();
+
+      final List<Object> batch;
+      synchronized (this) {
+        pending.add(message);
+        if (pending.size() < maxBatchSize) {
+          if (flushTask == null) {
+            flushTask =
+                scheduler.schedule(
+                    this::flush, maxBatchDelay.getQuantity(), maxBatchDelay.getUnit());
+          }
+          return;
+        }
+        batch = takeBatch();
+      }
+      publish(batch);
+    }
+
+    private void flush() {
+      final List<Object> batch;
+      synchronized (this) {
+        batch = takeBatch();
+      }
+      if (!batch.isEmpty()) {
+        publish(batch);
+      }
+    }
+
+    @GuardedBy("this")
+    private List<Object> takeBatch() {
+      if (flushTask != null) {
+        flushTask.cancel(false);
+        flushTask = null;
+      }
+      final List<Object> batch = pending;
+      pending = new ArrayList<>();
+      return batch;
+    }
+
+    private void publish(List<Object> batch) {
+      batches.mark();
+      if (subscribers.isEmpty()) {
+        return;
+      }
+
+      final OutboundSseEvent event =
+          sse.newEventBuilder()
+              .name(topic)
+              .mediaType(MediaType.APPLICATION_JSON_TYPE)
+              .data(List.class, batch)
+              .build();
+      subscribers.forEach(subscriber -> subscriber.offer(event));
+    }
+  }
+
+  private final class Subscriber {
+    private final TopicStream stream;
+    private final SseEventSink sink;
+    private final Queue<OutboundSseEvent> buffer;
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicInteger writeState = new AtomicInteger(IDLE);
+    private volatile long writeStartedAt;
+
+    Subscriber(TopicStream stream, SseEventSink sink) {
+      this.stream = stream;
+      this.sink = sink;
+      this.buffer = new ArrayBlockingQueue<>(subscriberBufferSize);
+    }
+
+    /** Called on the batching thread, so only enqueues the event and schedules a send */
+    void offer(OutboundSseEvent event) {
+      if (closed.get()) {
+        return;
+      }
+      while (!buffer.offer(event)) {
+        if (buffer.poll() != null) {
+          stream.dropped.mark();
+        }
+      }
+      schedule();
+    }
+
+    private void schedule() {
+      if (buffer.isEmpty() || !sending.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        sender.execute(this::sendNext);
+      } catch (RejectedExecutionException e) {
+        // the sender pool has been shut down
+        close();
+      }
+    }
+
+    /** Send the next buffered batch, so at most one send is outstanding per client */
+    private void sendNext() {
+      final OutboundSseEvent event = buffer.poll();
+      if (event != null) {
+        if (closed.get() || sink.isClosed()) {
+          close();
+          return;
+        }
+        writeStartedAt = System.nanoTime();
+        writeState.set(WRITING);
+        try {
+          sink.send(event).toCompletableFuture().join();
+        } catch (RuntimeException e) {
+          LOGGER.debug("Unable to send event to client on {}", stream.topic, e);
+          close();
+          return;
+        } finally {
+          if (writeState.getAndSet(IDLE) == STALLED) {
+            adjustStalledWrites(-1);
+          }
+        }
+      }
+      sending.set(false);
+      schedule();
+    }
+
+    /** Called periodically on the scheduler to find clients which are gone or stalled */
+    void check(long now) {
+      if (sink.isClosed()) {
+        close();
+        return;
+      }
+      if (writeState.get() == WRITING
+          && now - writeStartedAt > writeTimeout.toNanoseconds()
+          && writeState.compareAndSet(WRITING, STALLED)) {
+        stream.timeouts.mark();
+        LOGGER.debug("Closing client on {} blocked for over {}", stream.topic, writeTimeout);
+        adjustStalledWrites(1);
+        // the blocked write holds the sink, so closing it only marks it closed
+        close();
+      }
+    }
+
+    void close() {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      stream.remove(this);
+      buffer.clear();
+      try {
+        sink.close();
+      } catch (Exception e) {
+        LOGGER.debug("Unable to close event sink on {}", stream.topic, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.events;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.atomix.core.Atomix;
+import io.dropwizard.lifecycle.ExecutorServiceManager;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class ClusterEventFactory {
+
+  /** Topics which clients may subscribe to; no stream is exposed when empty */
+  @NotNull private Set<String> topics = Collections.emptySet();
+
+  @Min(1)
+  private int maxBatchSize = 100;
+
+  @NotNull private Duration maxBatchDelay = Duration.milliseconds(100);
+
+  @Min(1)
+  private int subscriberBufferSize = 64;
+
+  /** Threads writing events to clients, bounding how many slow clients are written at once */
+  @Min(1)
+  private int senderThreads = 8;
+
+  /** Maximum time a write to a client may block before the client is closed */
+  @NotNull private Duration writeTimeout = Duration.seconds(10);
+
+  @JsonProperty
+  public Set<String> getTopics() {
+    return topics;
+  }
+
+  @JsonProperty
+  public void setTopics(Set<String> topics) {
+    this.topics = topics;
+  }
+
+  @JsonProperty
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  @JsonProperty
+  public void setMaxBatchSize(int size) {
+    this.maxBatchSize = size;
+  }
+
+  @JsonProperty
+  public Duration getMaxBatchDelay() {
+    return maxBatchDelay;
+  }
+
+  @JsonProperty
+  public void setMaxBatchDelay(Duration delay) {
+    this.maxBatchDelay = delay;
+  }
+
+  @JsonProperty
+  public int getSubscriberBufferSize() {
+    return subscriberBufferSize;
+  }
+
+  @JsonProperty
+  public void setSubscriberBufferSize(int size) {
+    this.subscriberBufferSize = size;
+  }
+
+  @JsonProperty
+  public int getSenderThreads() {
+    return senderThreads;
+  }
+
+  @JsonProperty
+  public void setSenderThreads(int threads) {
+    this.senderThreads = threads;
+  }
+
+  @JsonProperty
+  public Duration getWriteTimeout() {
+    return writeTimeout;
+  }
+
+  @JsonProperty
+  public void setWriteTimeout(Duration timeout) {
+    this.writeTimeout = timeout;
+  }
+
+  @JsonIgnore
+  public ClusterEventBroadcaster build(Atomix atomix, Environment environment) {
+    final ScheduledExecutorService scheduler =
+        environment.lifecycle().scheduledExecutorService("atomix-events-%d").build();
+    // built directly rather than through the lifecycle, which only exposes an ExecutorService, as
+    // the broadcaster resizes the pool while writes are stalled
+    final ThreadPoolExecutor sender =
+        new ThreadPoolExecutor(
+            senderThreads,
+            senderThreads,
+            1,
+            TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("atomix-events-sender-%d").build());
+    environment
+        .lifecycle()
+        .manage(new ExecutorServiceManager(sender, Duration.seconds(5), "atomix-events-sender"));
+    final ClusterEventBroadcaster broadcaster =
+        new ClusterEventBroadcaster(
+            atomix,
+            topics,
+            maxBatchSize,
+            maxBatchDelay,
+            subscriberBufferSize,
+            writeTimeout,
+            scheduler,
+            sender,
+            environment.metrics());
+    environment.lifecycle().manage(broadcaster);
+    return broadcaster;
+  }
+}
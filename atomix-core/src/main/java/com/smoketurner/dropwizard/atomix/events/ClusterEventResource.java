@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.events;
+
+import java.util.Objects;
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+@Path("/atomix/events")
+public class ClusterEventResource {
+
+  private final ClusterEventBroadcaster broadcaster;
+
+  /**
+   * Constructor
+   *
+   * @param broadcaster Cluster event broadcaster
+   */
+  public ClusterEventResource(final ClusterEventBroadcaster broadcaster) {
+    this.broadcaster = Objects.requireNonNull(broadcaster);
+  }
+
+  @GET
+  @Path("/{topic}")
+  @Produces(MediaType.SERVER_SENT_EVENTS)
+  public void subscribe(
+      @PathParam("topic") String topic, @Context SseEventSink sink, @Context Sse sse) {
+    if (!broadcaster.isTopic(topic)) {
+      throw new NotFoundException(String.format("Unknown topic: %s", topic));
+    }
+    broadcaster.subscribe(topic, sink, sse);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.idempotency;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.atomix.core.Atomix;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.NotEmpty;
+
+public class IdempotencyFactory {
+
+  @NotEmpty private String mapName = "idempotency-keys";
+
+  @NotEmpty private String header = "Idempotency-Key";
+
+  @NotNull private Duration ttl = Duration.hours(24);
+
+  /**
+   * How long a key stays claimed once its request stops renewing the lease, e.g. if the node
+   * crashes; the lease is renewed every third of this while the request is processed
+   */
+  @NotNull private Duration leaseTtl = Duration.minutes(1);
+
+  @Min(0)
+  private long nearCacheSize = 10000;
+
+  @JsonProperty
+  public String getMapName() {
+    return mapName;
+  }
+
+  @JsonProperty
+  public void setMapName(String name) {
+    this.mapName = name;
+  }
+
+  @JsonProperty
+  public String getHeader() {
+    return header;
+  }
+
+  @JsonProperty
+  public void setHeader(String header) {
+    this.header = header;
+  }
+
+  @JsonProperty
+  public Duration getTtl() {
+    return ttl;
+  }
+
+  @JsonProperty
+  public void setTtl(Duration ttl) {
+    this.ttl = ttl;
+  }
+
+  @JsonProperty
+  public Duration getLeaseTtl() {
+    return leaseTtl;
+  }
+
+  @JsonProperty
+  public void setLeaseTtl(Duration ttl) {
+    this.leaseTtl = ttl;
+  }
+
+  @JsonProperty
+  public long getNearCacheSize() {
+    return nearCacheSize;
+  }
+
+  @JsonProperty
+  public void setNearCacheSize(long size) {
+    this.nearCacheSize = size;
+  }
+
+  @JsonIgnore
+  public IdempotencyFeature build(Atomix atomix, Environment environment) {
+    final IdempotencyStore store =
+        new IdempotencyStore(
+            atomix,
+            mapName,
+            ttl,
+            leaseTtl,
+            nearCacheSize,
+            environment.lifecycle().scheduledExecutorService("atomix-idempotency-%d").build(),
+            environment.getObjectMapper(),
+            environment.metrics());
+    return new IdempotencyFeature(store, header);
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.idempotency;
+
+import java.util.Objects;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+
+/** Registers the {@link IdempotencyFilter} on resource methods annotated with {@link Idempotent} */
+public class IdempotencyFeature implements DynamicFeature {
+
+  private final IdempotencyStore store;
+  private final String header;
+
+  /**
+   * Constructor
+   *
+   * @param store Idempotency key store
+   * @param header Name of the request header carrying the idempotency key
+   */
+  public IdempotencyFeature(final IdempotencyStore store, final String header) {
+    this.store = Objects.requireNonNull(store);
+    this.header = Objects.requireNonNull(header);
+  }
+
+  @Override
+  public void configure(final ResourceInfo resourceInfo, final FeatureContext context) {
+    if (resourceInfo.getResourceMethod().isAnnotationPresent(Idempotent.class)) {
+      context.register(new IdempotencyFilter(store, header));
+    }
+  }
+}
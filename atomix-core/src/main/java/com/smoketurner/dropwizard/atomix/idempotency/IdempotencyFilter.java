@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.idempotency;
+
+import com.google.common.base.Strings;
+import com.smoketurner.dropwizard.atomix.jersey.StoredResponse;
+import io.dropwizard.jersey.errors.ErrorMessage;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.Optional;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Short-circuits requests whose idempotency key has already been processed with the stored
+ * response, and records the response of requests which claim a new key. Server errors and the
+ * transient client errors (408, 409 and 429) release the key so the client can retry.
+ */
+@Priority(Priorities.USER)
+public class IdempotencyFilter
+    implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+  public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+  private static final String CLAIM_PROPERTY = IdempotencyFilter.class.getName() + ".claim";
+  private static final String STATUS_PROPERTY = IdempotencyFilter.class.getName() + ".status";
+
+  private final IdempotencyStore store;
+  private final String header;
+
+  /**
+   * Constructor
+   *
+   * @param store Idempotency key store
+   * @param header Name of the request header carrying the idempotency key
+   */
+  public IdempotencyFilter(final IdempotencyStore store, final String header) {
+    this.store = Objects.requireNonNull(store);
+    this.header = Objects.requireNonNull(header);
+  }
+
+  @Override
+  public void filter(final ContainerRequestContext request) throws IOException {
+    final String value = request.getHeaderString(header);
+    if (Strings.isNullOrEmpty(value)) {
+      return;
+    }
+
+    // scope keys to the endpoint so the same key can be used against different resources
+    final String key = request.getMethod() + " " + request.getUriInfo().getPath() + " " + value;
+
+    final IdempotencyStore.Claim claim = store.claim(key);
+    if (claim.isClaimed()) {
+      request.setProperty(CLAIM_PROPERTY, claim);
+      return;
+    }
+
+    final Optional<StoredResponse> response = claim.getResponse();
+    if (response.isPresent()) {
+      request.abortWith(response.get().replay().header(REPLAYED_HEADER, "true").build());
+    } else {
+      request.abortWith(
+          Response.status(Response.Status.CONFLICT)
+              .type(MediaType.APPLICATION_JSON_TYPE)
+              .entity(
+                  new ErrorMessage(
+                      Response.Status.CONFLICT.getStatusCode(),
+                      "A request with this idempotency key is already in progress"))
+              .build());
+    }
+  }
+
+  @Override
+  public void filter(final ContainerRequestContext request, final ContainerResponseContext response)
+      throws IOException {
+    final IdempotencyStore.Claim claim =
+        (IdempotencyStore.Claim) request.getProperty(CLAIM_PROPERTY);
+    if (claim == null) {
+      return;
+    }
+
+    if (isRetryable(response.getStatus())) {
+      request.removeProperty(CLAIM_PROPERTY);
+      store.release(claim);
+      return;
+    }
+
+    if (!response.hasEntity()) {
+      request.removeProperty(CLAIM_PROPERTY);
+      store.complete(
+          claim,
+          new StoredResponse(
+              response.getStatus(), StoredResponse.copyHeaders(response.getStringHeaders()), null));
+      return;
+    }
+
+    // the body is only available once the entity has been written
+    request.setProperty(STATUS_PROPERTY, response.getStatus());
+  }
+
+  @Override
+  public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+    final IdempotencyStore.Claim claim =
+        (IdempotencyStore.Claim) context.getProperty(CLAIM_PROPERTY);
+    final Integer status = (Integer) context.getProperty(STATUS_PROPERTY);
+    if (claim == null || status == null) {
+      context.proceed();
+      return;
+    }
+
+    final OutputStream original = context.getOutputStream();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    context.setOutputStream(new TeeOutputStream(original, body));
+    try {
+      context.proceed();
+    } catch (IOException | RuntimeException e) {
+      store.release(claim);
+      throw e;
+    } finally {
+      context.setOutputStream(original);
+    }
+
+    store.complete(
+        claim,
+        new StoredResponse(
+            status, StoredResponse.copyHeaders(context.getHeaders()), body.toByteArray()));
+  }
+
+  /**
+   * @return whether a response with the given status should release the key rather than be
+   *     replayed, as the same request may succeed when retried
+   */
+  private static boolean isRetryable(final int status) {
+    return Response.Status.Family.familyOf(status) == Response.Status.Family.SERVER_ERROR
+        || status == Response.Status.REQUEST_TIMEOUT.getStatusCode()
+        || status == Response.Status.CONFLICT.getStatusCode()
+        || status == Response.Status.TOO_MANY_REQUESTS.getStatusCode();
+  }
+
+  private static final class TeeOutputStream extends FilterOutputStream {
+    private final OutputStream copy;
+
+    TeeOutputStream(OutputStream out, OutputStream copy) {
+      super(out);
+      this.copy = copy;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      copy.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      copy.write(b, off, len);
+    }
+  }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.idempotency;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.smoketurner.dropwizard.atomix.jersey.StoredResponse;
+import io.atomix.core.Atomix;
+import io.atomix.core.map.AtomicMap;
+import io.atomix.utils.time.Versioned;
+import io.dropwizard.util.Duration;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records idempotency keys and their responses in an Atomix {@link AtomicMap} (partitioned across
+ * the default partition group), with every entry expiring after the configured TTL. A request
+ * claims its key with a single atomic put-if-absent of an in-progress lease, which is renewed while
+ * the request is processed and replaced by the serialized response once the request completes.
+ * Every write made on behalf of a claim is checked against the version of the lease it holds, so a
+ * request whose lease has lapsed and been claimed by a retry never overwrites the retry's entry.
+ * Completed responses are also kept in a bounded local near-cache so retries arriving at the same
+ * node are answered without a round trip.
+ */
+public class IdempotencyStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdempotencyStore.class);
+
+  /** Prefix of the value stored under a key while its request is being processed */
+  static final String IN_PROGRESS = "IN_PROGRESS:";
+
+  private final Supplier<AtomicMap<String, String>> map;
+  private final java.time.Duration ttl;
+  private final java.time.Duration leaseTtl;
+  private final ScheduledExecutorService scheduler;
+  private final Cache<String, NearCacheEntry> nearCache;
+  private final ObjectMapper mapper;
+  private final Meter claims;
+  private final Meter replays;
+  private final Meter nearCacheHits;
+  private final Meter conflicts;
+  private final Meter lostLeases;
+
+  /**
+   * Constructor
+   *
+   * @param atomix Atomix instance
+   * @param mapName Name of the map storing idempotency keys
+   * @param ttl Time after which a key may be re-used once its response has been stored
+   * @param leaseTtl Time after which a key may be claimed again if its request stops renewing it
+   * @param nearCacheSize Maximum number of completed responses cached locally
+   * @param scheduler Scheduler renewing the leases of requests being processed
+   * @param mapper Object mapper used to serialize responses
+   * @param metrics Metric registry
+   */
+  public IdempotencyStore(
+      final Atomix atomix,
+      final String mapName,
+      final Duration ttl,
+      final Duration leaseTtl,
+      final long nearCacheSize,
+      final ScheduledExecutorService scheduler,
+      final ObjectMapper mapper,
+      final MetricRegistry metrics) {
+    // Atomix is not started until after the application has been run, so open the map lazily
+    this(
+        Suppliers.memoize(() -> Objects.requireNonNull(atomix).getAtomicMap(mapName)),
+        mapName,
+        ttl,
+        leaseTtl,
+        nearCacheSize,
+        scheduler,
+        mapper,
+        metrics);
+  }
+
+  IdempotencyStore(
+      final Supplier<AtomicMap<String, String>> map,
+      final String mapName,
+      final Duration ttl,
+      final Duration leaseTtl,
+      final long nearCacheSize,
+      final ScheduledExecutorService scheduler,
+      final ObjectMapper mapper,
+      final MetricRegistry metrics) {
+    Objects.requireNonNull(mapName);
+
+    this.map = Objects.requireNonNull(map);
+    this.ttl = java.time.Duration.ofNanos(ttl.toNanoseconds());
+    this.leaseTtl = java.time.Duration.ofNanos(leaseTtl.toNanoseconds());
+    this.scheduler = Objects.requireNonNull(scheduler);
+    this.nearCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(nearCacheSize)
+            .expireAfterWrite(ttl.toNanoseconds(), TimeUnit.NANOSECONDS)
+            .build();
+    this.mapper = Objects.requireNonNull(mapper);
+
+    final String prefix = MetricRegistry.name("atomix", "idempotency", mapName);
+    this.claims = metrics.meter(MetricRegistry.name(prefix, "claims"));
+    this.replays = metrics.meter(MetricRegistry.name(prefix, "replays"));
+    this.nearCacheHits = metrics.meter(MetricRegistry.name(prefix, "near-cache-hits"));
+    this.conflicts = metrics.meter(MetricRegistry.name(prefix, "conflicts"));
+    this.lostLeases = metrics.meter(MetricRegistry.name(prefix, "lost-leases"));
+  }
+
+  /**
+   * Attempt to claim a key for processing. A successful claim must be ended with either {@link
+   * #complete(Claim, StoredResponse)} or {@link #release(Claim)}, as its lease is renewed until
+   * then.
+   *
+   * @param key Idempotency key
+   * @return the outcome of the claim
+   */
+  public Claim claim(final String key) {
+    final NearCacheEntry cached = nearCache.getIfPresent(key);
+    if (cached != null) {
+      if (cached.expiresAt - System.currentTimeMillis() > 0) {
+        nearCacheHits.mark();
+        replays.mark();
+        return new Claim(null, cached.response);
+      }
+      nearCache.invalidate(key);
+    }
+
+    // the claim only holds a short lease, so a request which dies before completing (or a node
+    // which crashes) does not lock the key for the full TTL
+    final String lease = newLease();
+    Versioned<String> existing = map.get().putIfAbsent(key, lease, leaseTtl);
+    if (existing == null) {
+      // put-if-absent does not return the version of the entry it created, which every later
+      // write for this claim is checked against
+      existing = map.get().get(key);
+      if (existing != null && lease.equals(existing.value())) {
+        claims.mark();
+        final Lease claimed = new Lease(key, lease, existing.version());
+        claimed.scheduleRenewal();
+        return new Claim(claimed, null);
+      }
+    }
+    if (existing == null || existing.value().startsWith(IN_PROGRESS)) {
+      conflicts.mark();
+      return new Claim(null, null);
+    }
+
+    final StoredResponse response = decode(existing.value());
+    // the stored response was written with the full TTL, so only cache it for what remains
+    final long expiresAt = existing.creationTime() + ttl.toMillis();
+    if (expiresAt - System.currentTimeMillis() > 0) {
+      nearCache.put(key, new NearCacheEntry(response, expiresAt));
+    }
+    replays.mark();
+    return new Claim(null, response);
+  }
+
+  /**
+   * Store the response for a claimed key. The response is only stored if the claim still holds
+   * its lease; otherwise the lost lease is logged and counted, and the key is left untouched.
+   *
+   * @param claim Claim returned for the key
+   * @param response Response to replay for duplicate requests
+   */
+  public void complete(final Claim claim, final StoredResponse response) {
+    final Lease lease = claim.getLease();
+    synchronized (lease) {
+      if (!lease.end()) {
+        return;
+      }
+      final String encoded = encode(response);
+      if (!map.get().replace(lease.key, lease.version, encoded)) {
+        lostLease(lease.key);
+        return;
+      }
+      // replace cannot set a TTL; the key now holds this response, so the put only applies it
+      map.get().put(lease.key, encoded, ttl);
+    }
+    nearCache.put(
+        lease.key, new NearCacheEntry(response, System.currentTimeMillis() + ttl.toMillis()));
+  }
+
+  /**
+   * Release a claimed key without storing a response, so the request can be retried. The key is
+   * only removed if the claim still holds its lease.
+   *
+   * @param claim Claim returned for the key
+   */
+  public void release(final Claim claim) {
+    final Lease lease = claim.getLease();
+    synchronized (lease) {
+      if (lease.end()) {
+        map.get().remove(lease.key, lease.version);
+      }
+    }
+  }
+
+  private void lostLease(final String key) {
+    lostLeases.mark();
+    LOGGER.warn(
+        "Lost the lease on idempotency key {} before its request completed, "
+            + "so its response will not be stored",
+        key);
+  }
+
+  private static String newLease() {
+    // unique so a claim can recognise its own entry, and so a renewal always changes the value
+    return IN_PROGRESS + UUID.randomUUID();
+  }
+
+  private String encode(final StoredResponse response) {
+    try {
+      return mapper.writeValueAsString(response);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private StoredResponse decode(final String value) {
+    try {
+      return mapper.readValue(value, StoredResponse.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Outcome of claiming an idempotency key */
+  public static final class Claim {
+    @Nullable private final Lease lease;
+    @Nullable private final StoredResponse response;
+
+    Claim(@Nullable Lease lease, @Nullable StoredResponse response) {
+      this.lease = lease;
+      this.response = response;
+    }
+
+    /** @return true if the caller now owns the key and should process the request */
+    public boolean isClaimed() {
+      return lease != null;
+    }
+
+    /** @return the stored response, or empty if the key is still being processed elsewhere */
+    public Optional<StoredResponse> getResponse() {
+      return Optional.ofNullable(response);
+    }
+
+    private Lease getLease() {
+      Preconditions.checkState(lease != null, "key was not claimed");
+      return lease;
+    }
+  }
+
+  /**
+   * The lease held on a claimed key, renewed every third of the lease TTL until the claim is
+   * completed or released. Renewals and the final write are made under the lease's lock, so they
+   * never race each other.
+   */
+  private final class Lease {
+    private final String key;
+    private String value;
+    /** Version of the entry holding {@link #value}, or -1 if a renewal failed to learn it */
+    private long version;
+    private boolean ended;
+    @Nullable private ScheduledFuture<?> renewal;
+
+    Lease(String key, String value, long version) {
+      this.key = key;
+      this.value = value;
+      this.version = version;
+    }
+
+    synchronized void scheduleRenewal() {
+      if (ended) {
+        return;
+      }
+      try {
+        renewal = scheduler.schedule(this::renew, leaseTtl.toNanos() / 3, TimeUnit.NANOSECONDS);
+      } catch (RejectedExecutionException e) {
+        // shutting down; the lease lapses on its own if the request does not complete first
+        renewal = null;
+      }
+    }
+
+    /**
+     * End the lease, stopping its renewal.
+     *
+     * @return false if the lease had already been lost
+     */
+    synchronized boolean end() {
+      final boolean held = !ended;
+      ended = true;
+      if (renewal != null) {
+        renewal.cancel(false);
+        renewal = null;
+      }
+      return held && knowsVersion();
+    }
+
+    private void renew() {
+      synchronized (this) {
+        if (ended) {
+          return;
+        }
+        try {
+          if (!knowsVersion()) {
+            return;
+          }
+          final String next = newLease();
+          if (!map.get().replace(key, version, next)) {
+            ended = true;
+            lostLease(key);
+            return;
+          }
+          value = next;
+          version = -1;
+          // replace cannot set a TTL; the key still holds this lease, so the put only renews it
+          version = map.get().putAndGet(key, next, leaseTtl).version();
+        } catch (RuntimeException e) {
+          // try again at the next renewal; the lease only lapses if renewals keep failing
+          LOGGER.warn("Unable to renew the lease on idempotency key {}", key, e);
+        } finally {
+          scheduleRenewal();
+        }
+      }
+    }
+
+    /**
+     * Recover the version of the lease if a renewal replaced it but failed before learning the
+     * version of the new entry, which is still recognised by its unique value.
+     *
+     * @return false if the lease has been lost, which is logged and counted
+     */
+    private boolean knowsVersion() {
+      if (version >= 0) {
+        return true;
+      }
+      final Versioned<String> current = map.get().get(key);
+      if (current == null || !value.equals(current.value())) {
+        ended = true;
+        lostLease(key);
+        return false;
+      }
+      version = current.version();
+      return true;
+    }
+  }
+
+  private static final class NearCacheEntry {
+    private final StoredResponse response;
+    private final long expiresAt;
+
+    NearCacheEntry(StoredResponse response, long expiresAt) {
+      this.response = response;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.jersey;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.annotation.concurrent.Immutable;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+/** A recorded response (status, headers and body) which can be stored and replayed later. */
+@Immutable
+public final class StoredResponse {
+
+  private final int status;
+  private final Map<String, List<String>> headers;
+  private final byte[] body;
+
+  @JsonCreator
+  public StoredResponse(
+      @JsonProperty("status") int status,
+      @JsonProperty("headers") Map<String, List<String>> headers,
+      @JsonProperty("body") byte[] body) {
+    this.status = status;
+    this.headers = headers == null ? ImmutableMap.of() : ImmutableMap.copyOf(headers);
+    this.body = body == null ? new byte[0] : body.clone();
+  }
+
+  @JsonProperty
+  public int getStatus() {
+    return status;
+  }
+
+  @JsonProperty
+  public Map<String, List<String>> getHeaders() {
+    return headers;
+  }
+
+  @JsonProperty
+  public byte[] getBody() {
+    return body.clone();
+  }
+
+  /**
+   * Copy response headers, converting every value to a string.
+   *
+   * @param headers Response headers
+   * @return copied headers
+   */
+  public static Map<String, List<String>> copyHeaders(final MultivaluedMap<String, ?> headers) {
+    final Map<String, List<String>> copy = new LinkedHashMap<>();
+    headers.forEach(
+        (name, values) ->
+            copy.put(name, values.stream().map(String::valueOf).collect(Collectors.toList())));
+    return copy;
+  }
+
+  /**
+   * Build a response replaying this one.
+   *
+   * @return response builder with the recorded status, headers and body
+   */
+  public Response.ResponseBuilder replay() {
+    final Response.ResponseBuilder builder = Response.status(status);
+    headers.forEach((name, values) -> values.forEach(v -> builder.header(name, v)));
+    if (body.length > 0) {
+      builder.entity(body.clone());
+    }
+    return builder;
+  }
+}
@@ -15,10 +15,19 @@
  */
 package com.smoketurner.dropwizard.atomix.managed;
 
+import com.smoketurner.dropwizard.atomix.warmup.WarmupFactory;
+import com.smoketurner.dropwizard.atomix.warmup.WarmupPrimitive;
 import io.atomix.core.Atomix;
 import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.util.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,6 +35,7 @@ public class AtomixManager implements Managed {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AtomixManager.class);
   private final Atomix atomix;
+  private final WarmupFactory warmup;
 
   /**
    * Constructor
@@ -33,7 +43,18 @@ public class AtomixManager implements Managed {
    * @param atomix Atomix instance to manage
    */
   public AtomixManager(final Atomix atomix) {
+    this(atomix, new WarmupFactory());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param atomix Atomix instance to manage
+   * @param warmup Primitives to warm up once quorum has been reached
+   */
+  public AtomixManager(final Atomix atomix, final WarmupFactory warmup) {
     this.atomix = Objects.requireNonNull(atomix);
+    this.warmup = Objects.requireNonNull(warmup);
   }
 
   @Override
@@ -45,6 +66,80 @@ public class AtomixManager implements Managed {
     final Duration duration = Duration.nanoseconds(System.nanoTime() - startTime);
 
     LOGGER.info("Started Atomix and reached quorum in {}ms", duration.toMilliseconds());
+
+    warmup();
+  }
+
+  /**
+   * Open every configured primitive in parallel and wait for them to become ready, or until the
+   * warm-up timeout has elapsed.
+   */
+  private void warmup() throws InterruptedException {
+    final List<WarmupPrimitive> primitives = warmup.getPrimitives();
+    if (primitives.isEmpty()) {
+      return;
+    }
+
+    LOGGER.info("Warming up {} Atomix primitive(s)...", primitives.size());
+
+    final long startTime = System.nanoTime();
+    final Map<WarmupPrimitive, CompletableFuture<?>> futures = new LinkedHashMap<>();
+    primitives.forEach(primitive -> futures.put(primitive, warmup(primitive)));
+
+    final Duration timeout = warmup.getTimeout();
+    try {
+      CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+          .get(timeout.getQuantity(), timeout.getUnit());
+    } catch (ExecutionException e) {
+      // each failure has already been logged with its cause, so only summarize them here
+      final List<String> failed =
+          futures.entrySet().stream()
+              .filter(entry -> entry.getValue().isCompletedExceptionally())
+              .map(entry -> entry.getKey().getName())
+              .collect(Collectors.toList());
+      LOGGER.warn(
+          "Atomix warm-up failed for {} of {} primitive(s): {}",
+          failed.size(),
+          primitives.size(),
+          failed);
+      return;
+    } catch (TimeoutException e) {
+      final List<String> late =
+          futures.entrySet().stream()
+              .filter(entry -> !entry.getValue().isDone())
+              .map(entry -> entry.getKey().getName())
+              .collect(Collectors.toList());
+      LOGGER.warn("Atomix warm-up did not complete within {}, still pending: {}", timeout, late);
+      return;
+    }
+
+    final Duration duration = Duration.nanoseconds(System.nanoTime() - startTime);
+    LOGGER.info("Warmed up Atomix primitives in {}ms", duration.toMilliseconds());
+  }
+
+  private CompletableFuture<?> warmup(final WarmupPrimitive primitive) {
+    final long startTime = System.nanoTime();
+    return primitive
+        .getType()
+        .warmup(atomix, primitive.getName())
+        .whenComplete(
+            (result, error) -> {
+              final Duration duration = Duration.nanoseconds(System.nanoTime() - startTime);
+              if (error != null) {
+                LOGGER.warn(
+                    "Failed to warm up {} ({}) after {}ms",
+                    primitive.getName(),
+                    primitive.getType(),
+                    duration.toMilliseconds(),
+                    error);
+              } else {
+                LOGGER.info(
+                    "Warmed up {} ({}) in {}ms",
+                    primitive.getName(),
+                    primitive.getType(),
+                    duration.toMilliseconds());
+              }
+            });
   }
 
   @Override
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.policy;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotNull;
+
+public class HedgeFactory {
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double percentile = 0.95;
+
+  @NotNull private Duration minDelay = Duration.milliseconds(10);
+
+  @JsonProperty
+  public double getPercentile() {
+    return percentile;
+  }
+
+  @JsonProperty
+  public void setPercentile(double percentile) {
+    this.percentile = percentile;
+  }
+
+  @JsonProperty
+  public Duration getMinDelay() {
+    return minDelay;
+  }
+
+  @JsonProperty
+  public void setMinDelay(Duration delay) {
+    this.minDelay = delay;
+  }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.policy;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.smoketurner.dropwizard.atomix.primitive.OperationInterceptor;
+import com.smoketurner.dropwizard.atomix.primitive.PrimitiveOperation;
+import io.dropwizard.util.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Applies a per-attempt timeout, retries with jittered exponential backoff and hedged reads to
+ * the operations of a single primitive.
+ *
+ * <p>Only read-only operations and operations explicitly listed as idempotent are retried. Hedged
+ * reads issue a second attempt, through an independent instance of the primitive, once the first
+ * has been outstanding for longer than the configured percentile of recent read latencies. A
+ * hedge sent through the same instance would share its session, and Atomix completes the
+ * operations of a session in the order they were submitted, so reads are only hedged when the
+ * primitive was decorated with a hedge instance.
+ */
+public class OperationPolicy implements OperationInterceptor {
+
+  private static final long HEDGE_DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final String name;
+  @Nullable private final Duration timeout;
+  @Nullable private final RetryFactory retry;
+  @Nullable private final HedgeFactory hedge;
+  private final ScheduledExecutorService scheduler;
+  private final Meter timeouts;
+  private final Meter retries;
+  private final Meter hedges;
+  private final Timer readLatency;
+
+  private volatile long hedgeDelayNanos;
+  private volatile long hedgeDelayExpiresAt = System.nanoTime();
+
+  /**
+   * Constructor
+   *
+   * @param name Primitive name
+   * @param timeout Timeout for each attempt of an operation
+   * @param retry Retry configuration
+   * @param hedge Hedged read configuration
+   * @param metrics Metric registry
+   * @param scheduler Scheduler used for timeouts, retries and hedges
+   */
+  public OperationPolicy(
+      final String name,
+      final Optional<Duration> timeout,
+      final Optional<RetryFactory> retry,
+      final Optional<HedgeFactory> hedge,
+      final MetricRegistry metrics,
+      final ScheduledExecutorService scheduler) {
+    this.name = Objects.requireNonNull(name);
+    this.timeout = timeout.orElse(null);
+    this.retry = retry.orElse(null);
+    this.hedge = hedge.orElse(null);
+    this.scheduler = Objects.requireNonNull(scheduler);
+
+    final String prefix = MetricRegistry.name("atomix", "policy", name);
+    this.timeouts = metrics.meter(MetricRegistry.name(prefix, "timeouts"));
+    this.retries = metrics.meter(MetricRegistry.name(prefix, "retries"));
+    this.hedges = metrics.meter(MetricRegistry.name(prefix, "hedges"));
+    this.readLatency = metrics.timer(MetricRegistry.name(prefix, "read-latency"));
+    this.hedgeDelayNanos = this.hedge == null ? 0 : this.hedge.getMinDelay().toNanoseconds();
+  }
+
+  public boolean isHedged() {
+    return hedge != null;
+  }
+
+  @Override
+  public <T> CompletableFuture<T> intercept(
+      final PrimitiveOperation operation, final Supplier<CompletableFuture<T>> invocation) {
+    return intercept(operation, invocation, null);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> intercept(
+      final PrimitiveOperation operation,
+      final Supplier<CompletableFuture<T>> invocation,
+      @Nullable final Supplier<CompletableFuture<T>> hedgeInvocation) {
+    if (retry == null || !isIdempotent(operation)) {
+      return attempt(operation, invocation, hedgeInvocation);
+    }
+
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    retry(operation, invocation, hedgeInvocation, 1, result);
+    return result;
+  }
+
+  private boolean isIdempotent(final PrimitiveOperation operation) {
+    return operation.isReadOnly()
+        || (retry != null && retry.getIdempotentOperations().contains(operation.getName()));
+  }
+
+  private <T> void retry(
+      final PrimitiveOperation operation,
+      final Supplier<CompletableFuture<T>> invocation,
+      @Nullable final Supplier<CompletableFuture<T>> hedgeInvocation,
+      final int attempt,
+      final CompletableFuture<T> result) {
+    attempt(operation, invocation, hedgeInvocation)
+        .whenComplete(
+            (value, error) -> {
+              if (error == null) {
+                result.complete(value);
+              } else if (attempt < retry.getMaxAttempts() && isRetryable(error)) {
+                retries.mark();
+                try {
+                  scheduler.schedule(
+                      () -> retry(operation, invocation, hedgeInvocation, attempt + 1, result),
+                      backoffNanos(attempt),
+                      TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                  // the scheduler has been shut down, so the retry will never run
+                  result.completeExceptionally(e);
+                }
+              } else {
+                result.completeExceptionally(error);
+              }
+            });
+  }
+
+  /** Full jitter: a random delay between zero and the capped exponential backoff */
+  private long backoffNanos(final int attempt) {
+    final long base = retry.getBackoff().toNanoseconds();
+    final long max = retry.getMaxBackoff().toNanoseconds();
+    // compare before shifting, so a large base or attempt cannot overflow past the cap
+    final int shift = Math.min(attempt - 1, 62);
+    final long ceiling = base > (max >> shift) ? max : base << shift;
+    return ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+
+  private static boolean isRetryable(Throwable error) {
+    while ((error instanceof CompletionException || error instanceof ExecutionException)
+        && error.getCause() != null) {
+      error = error.getCause();
+    }
+    // retrying a rejected operation only adds to the load on an already saturated primitive
+    return !(error instanceof RejectedExecutionException);
+  }
+
+  private <T> CompletableFuture<T> attempt(
+      final PrimitiveOperation operation,
+      final Supplier<CompletableFuture<T>> invocation,
+      @Nullable final Supplier<CompletableFuture<T>> hedgeInvocation) {
+    if (hedge == null || !operation.isReadOnly()) {
+      return withTimeout(invocation.get());
+    }
+    if (hedgeInvocation == null) {
+      return recordLatency(invocation.get());
+    }
+    return new HedgedRead<>(invocation, hedgeInvocation).start();
+  }
+
+  private <T> CompletableFuture<T> recordLatency(final CompletableFuture<T> future) {
+    final long startTime = System.nanoTime();
+    return withTimeout(future)
+        .whenComplete(
+            (value, error) -> {
+              if (error == null) {
+                readLatency.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+              }
+            });
+  }
+
+  private <T> CompletableFuture<T> withTimeout(final CompletableFuture<T> future) {
+    if (timeout == null || future.isDone()) {
+      return future;
+    }
+
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    final ScheduledFuture<?> task =
+        scheduler.schedule(
+            () -> {
+              if (result.completeExceptionally(
+                  new TimeoutException(
+                      String.format("Operation on '%s' timed out after %s", name, timeout)))) {
+                timeouts.mark();
+                // lets a bulkhead skip the operation if it is still queued
+                future.cancel(false);
+              }
+            },
+            timeout.getQuantity(),
+            timeout.getUnit());
+
+    future.whenComplete(
+        (value, error) -> {
+          task.cancel(false);
+          if (error != null) {
+            result.completeExceptionally(error);
+          } else {
+            result.complete(value);
+          }
+        });
+    return result;
+  }
+
+  private long hedgeDelayNanos() {
+    final long now = System.nanoTime();
+    if (now - hedgeDelayExpiresAt >= 0) {
+      final double latency = readLatency.getSnapshot().getValue(hedge.getPercentile());
+      hedgeDelayNanos = Math.max(hedge.getMinDelay().toNanoseconds(), (long) latency);
+      hedgeDelayExpiresAt = now + HEDGE_DELAY_REFRESH_NANOS;
+    }
+    return hedgeDelayNanos;
+  }
+
+  /**
+   * A read which is issued a second time, through the hedge primitive, if the first attempt has
+   * not completed within the hedge delay. The first successful attempt wins and the other is
+   * cancelled; the read only fails once every launched attempt has failed.
+   */
+  private final class HedgedRead<T> {
+    private final Supplier<CompletableFuture<T>> invocation;
+    private final Supplier<CompletableFuture<T>> hedgeInvocation;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    @GuardedBy("this")
+    private final List<CompletableFuture<T>> attempts = new ArrayList<>(2);
+
+    @GuardedBy("this")
+    private int outstanding;
+
+    @GuardedBy("this")
+    private boolean hedged;
+
+    HedgedRead(
+        Supplier<CompletableFuture<T>> invocation,
+        Supplier<CompletableFuture<T>> hedgeInvocation) {
+      this.invocation = invocation;
+      this.hedgeInvocation = hedgeInvocation;
+    }
+
+    CompletableFuture<T> start() {
+      synchronized (this) {
+        outstanding = 1;
+      }
+      launch(invocation);
+
+      if (!result.isDone()) {
+        final ScheduledFuture<?> task =
+            scheduler.schedule(this::hedge, hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        result.whenComplete(
+            (value, error) -> {
+              task.cancel(false);
+              cancelAttempts();
+            });
+      }
+      return result;
+    }
+
+    private void hedge() {
+      synchronized (this) {
+        if (hedged || result.isDone()) {
+          return;
+        }
+        hedged = true;
+        outstanding++;
+      }
+      hedges.mark();
+      launch(hedgeInvocation);
+    }
+
+    private void launch(final Supplier<CompletableFuture<T>> supplier) {
+      final CompletableFuture<T> attempt = supplier.get();
+      synchronized (this) {
+        attempts.add(attempt);
+      }
+      if (result.isDone()) {
+        // the other attempt won while this one was being launched
+        attempt.cancel(false);
+        return;
+      }
+      recordLatency(attempt)
+          .whenComplete(
+              (value, error) -> {
+                if (error == null) {
+                  result.complete(value);
+                  return;
+                }
+                synchronized (this) {
+                  outstanding--;
+                  // a failure before the hedge fires fails the read rather than waiting for it
+                  hedged = true;
+                  if (outstanding > 0) {
+                    return;
+                  }
+                }
+                result.completeExceptionally(error);
+              });
+    }
+
+    /** Lets a bulkhead skip, or the primitive drop, the attempt which lost */
+    private void cancelAttempts() {
+      final List<CompletableFuture<T>> launched;
+      synchronized (this) {
+        launched = new ArrayList<>(attempts);
+      }
+      launched.forEach(attempt -> attempt.cancel(false));
+    }
+  }
+}
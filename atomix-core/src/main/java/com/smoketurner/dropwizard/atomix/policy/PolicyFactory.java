@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.policy;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.annotation.Nullable;
+import javax.validation.Valid;
+
+public class PolicyFactory {
+
+  @Nullable private Duration timeout;
+
+  @Valid @Nullable private RetryFactory retry;
+
+  @Valid @Nullable private HedgeFactory hedge;
+
+  @JsonProperty
+  public Optional<Duration> getTimeout() {
+    return Optional.ofNullable(timeout);
+  }
+
+  @JsonProperty
+  public void setTimeout(@Nullable Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  @JsonProperty
+  public Optional<RetryFactory> getRetry() {
+    return Optional.ofNullable(retry);
+  }
+
+  @JsonProperty
+  public void setRetry(@Nullable RetryFactory retry) {
+    this.retry = retry;
+  }
+
+  @JsonProperty
+  public Optional<HedgeFactory> getHedge() {
+    return Optional.ofNullable(hedge);
+  }
+
+  @JsonProperty
+  public void setHedge(@Nullable HedgeFactory hedge) {
+    this.hedge = hedge;
+  }
+
+  @JsonIgnore
+  public OperationPolicy build(
+      String name, MetricRegistry metrics, ScheduledExecutorService scheduler) {
+    return new OperationPolicy(name, getTimeout(), getRetry(), getHedge(), metrics, scheduler);
+  }
+}
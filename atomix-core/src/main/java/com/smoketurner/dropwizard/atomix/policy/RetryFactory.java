@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.policy;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import java.util.Collections;
+import java.util.Set;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class RetryFactory {
+
+  @Min(1)
+  private int maxAttempts = 3;
+
+  @NotNull private Duration backoff = Duration.milliseconds(50);
+
+  @NotNull private Duration maxBackoff = Duration.seconds(1);
+
+  /** Operations, in addition to read-only operations, which are safe to retry */
+  @NotNull private Set<String> idempotentOperations = Collections.emptySet();
+
+  @JsonProperty
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  @JsonProperty
+  public void setMaxAttempts(int attempts) {
+    this.maxAttempts = attempts;
+  }
+
+  @JsonProperty
+  public Duration getBackoff() {
+    return backoff;
+  }
+
+  @JsonProperty
+  public void setBackoff(Duration backoff) {
+    this.backoff = backoff;
+  }
+
+  @JsonProperty
+  public Duration getMaxBackoff() {
+    return maxBackoff;
+  }
+
+  @JsonProperty
+  public void setMaxBackoff(Duration backoff) {
+    this.maxBackoff = backoff;
+  }
+
+  @JsonProperty
+  public Set<String> getIdempotentOperations() {
+    return idempotentOperations;
+  }
+
+  @JsonProperty
+  public void setIdempotentOperations(Set<String> operations) {
+    this.idempotentOperations = operations;
+  }
+}
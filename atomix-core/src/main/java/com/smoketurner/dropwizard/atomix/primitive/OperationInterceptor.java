@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.primitive;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+@FunctionalInterface
+public interface OperationInterceptor {
+
+  /**
+   * Intercept an asynchronous primitive operation.
+   *
+   * @param operation Operation being invoked
+   * @param invocation Supplier which invokes the next interceptor (or the primitive itself)
+   * @return future for the result of the operation
+   */
+  <T> CompletableFuture<T> intercept(
+      PrimitiveOperation operation, Supplier<CompletableFuture<T>> invocation);
+
+  /**
+   * Intercept a read-only operation which can also be invoked through an independent instance of
+   * the primitive. Interceptors which do not issue hedged attempts ignore the hedge.
+   *
+   * @param operation Operation being invoked
+   * @param invocation Supplier which invokes the next interceptor (or the primitive itself)
+   * @param hedge Supplier which invokes the next interceptor (or the hedge primitive itself)
+   * @return future for the result of the operation
+   */
+  default <T> CompletableFuture<T> intercept(
+      PrimitiveOperation operation,
+      Supplier<CompletableFuture<T>> invocation,
+      Supplier<CompletableFuture<T>> hedge) {
+    return intercept(operation, invocation);
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.primitive;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.smoketurner.dropwizard.atomix.policy.PolicyFactory;
+import com.smoketurner.dropwizard.atomix.slowlog.SlowOperationLog;
+import io.atomix.primitive.AsyncPrimitive;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * Wraps asynchronous primitives so every operation returning a {@link CompletableFuture} passes
+ * through the slow operation log and then the interceptors configured for that primitive name: the
+ * operation policy (timeouts, retries and hedged reads) and then the bulkhead, so every retried or
+ * hedged attempt takes its own bulkhead permit. Interceptor state (such as bulkhead permits) is
+ * shared by every proxy decorated for the same primitive name.
+ *
+ * <p>Hedged reads need a second instance of the primitive with its own session, which is passed to
+ * {@link #decorate(Class, AsyncPrimitive, Supplier)} and built at most once per primitive name.
+ *
+ * <p>Each intercepted call allocates the argument array (created by the proxy) and one supplier per
+ * interceptor in the chain, in addition to whatever the interceptors themselves allocate.
+ *
+ * <p>Only the asynchronous API is intercepted; a blocking view should be obtained by decorating
+ * {@code primitive.async()} rather than through {@link AsyncPrimitive#sync()}.
+ */
+public class PrimitiveDecorator {
+
+  private final Map<String, PrimitiveFactory> primitives;
+  private final MetricRegistry metrics;
+  private final ScheduledExecutorService scheduler;
+  private final SlowOperationLog slowOperations;
+  private final ConcurrentMap<String, List<OperationInterceptor>> interceptors =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AsyncPrimitive> hedgePrimitives = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param primitives Per-primitive configuration keyed by primitive name
+   * @param metrics Metric registry
+   * @param scheduler Scheduler used for timeouts, retries and hedged reads
+   * @param slowOperations Slow operation log applied to every primitive
+   */
+  public PrimitiveDecorator(
+      final Map<String, PrimitiveFactory> primitives,
+      final MetricRegistry metrics,
+      final ScheduledExecutorService scheduler,
+      final SlowOperationLog slowOperations) {
+    this.primitives = Objects.requireNonNull(primitives);
+    this.metrics = Objects.requireNonNull(metrics);
+    this.scheduler = Objects.requireNonNull(scheduler);
+    this.slowOperations = Objects.requireNonNull(slowOperations);
+  }
+
+  public SlowOperationLog getSlowOperationLog() {
+    return slowOperations;
+  }
+
+  /**
+   * Decorate an asynchronous primitive with the interceptors configured for its name. Reads are not
+   * hedged, even if hedged reads are configured for the primitive.
+   *
+   * @param type Asynchronous primitive interface, e.g. {@code AsyncAtomicCounter.class}
+   * @param primitive Primitive to decorate
+   * @return decorated primitive
+   */
+  public <T extends AsyncPrimitive> T decorate(final Class<T> type, final T primitive) {
+    Objects.requireNonNull(type);
+    Objects.requireNonNull(primitive);
+    return proxy(type, primitive, null);
+  }
+
+  /**
+   * Decorate an asynchronous primitive with the interceptors configured for its name, sending
+   * hedged reads through a second instance of the same primitive.
+   *
+   * <p>The hedge primitive must have its own session, so it should be built through the primitive
+   * builder rather than a cached getter, for example with {@code
+   * atomix.atomicMapBuilder(name).withProtocol(MultiRaftProtocol.builder().withReadConsistency(
+   * ReadConsistency.SEQUENTIAL).build()).build().async()}. It is only built if hedged reads are
+   * configured for the primitive, and then only once per primitive name.
+   *
+   * @param type Asynchronous primitive interface, e.g. {@code AsyncAtomicMap.class}
+   * @param primitive Primitive to decorate
+   * @param hedgePrimitive Supplier of a second instance of the primitive used for hedged reads
+   * @return decorated primitive
+   */
+  public <T extends AsyncPrimitive> T decorate(
+      final Class<T> type, final T primitive, final Supplier<T> hedgePrimitive) {
+    Objects.requireNonNull(type);
+    Objects.requireNonNull(primitive);
+    Objects.requireNonNull(hedgePrimitive);
+
+    if (!isHedged(primitive.name())) {
+      return proxy(type, primitive, null);
+    }
+
+    final AsyncPrimitive hedge =
+        hedgePrimitives.computeIfAbsent(
+            primitive.name(), name -> Objects.requireNonNull(hedgePrimitive.get()));
+    if (!hedge.name().equals(primitive.name()) || hedge == primitive) {
+      throw new IllegalArgumentException(
+          "Hedge primitive must be a separate instance of '" + primitive.name() + "'");
+    }
+    return proxy(type, primitive, type.cast(hedge));
+  }
+
+  private <T extends AsyncPrimitive> T proxy(
+      final Class<T> type, final T primitive, @Nullable final T hedge) {
+    final List<OperationInterceptor> chain =
+        interceptors.computeIfAbsent(primitive.name(), this::buildInterceptors);
+    final InvocationHandler handler =
+        new InterceptingHandler(primitive, hedge, primitive.type().name(), chain);
+    return type.cast(
+        Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+  }
+
+  private boolean isHedged(final String name) {
+    return Optional.ofNullable(primitives.get(name))
+        .flatMap(PrimitiveFactory::getPolicy)
+        .flatMap(PolicyFactory::getHedge)
+        .isPresent();
+  }
+
+  private List<OperationInterceptor> buildInterceptors(final String name) {
+    final ImmutableList.Builder<OperationInterceptor> builder = ImmutableList.builder();
+    builder.add(slowOperations);
+
+    final PrimitiveFactory factory = primitives.get(name);
+    if (factory == null) {
+      return builder.build();
+    }
+
+    factory.getPolicy().ifPresent(policy -> builder.add(policy.build(name, metrics, scheduler)));
+    factory.getBulkhead().ifPresent(bulkhead -> builder.add(bulkhead.build(name, metrics)));
+    return builder.build();
+  }
+
+  private static final class InterceptingHandler implements InvocationHandler {
+    private final AsyncPrimitive delegate;
+    @Nullable private final AsyncPrimitive hedge;
+    private final String primitiveType;
+    private final List<OperationInterceptor> chain;
+    private final ConcurrentMap<Method, PrimitiveOperation> operations =
+        new ConcurrentHashMap<>();
+
+    InterceptingHandler(
+        AsyncPrimitive delegate,
+        @Nullable AsyncPrimitive hedge,
+        String primitiveType,
+        List<OperationInterceptor> chain) {
+      this.delegate = delegate;
+      this.hedge = hedge;
+      this.primitiveType = primitiveType;
+      this.chain = chain;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      // lifecycle methods (close, delete, listeners) and non-future methods are not intercepted
+      if (!CompletableFuture.class.isAssignableFrom(method.getReturnType())
+          || method.getDeclaringClass().isAssignableFrom(AsyncPrimitive.class)) {
+        return invoke(delegate, method, args);
+      }
+
+      final PrimitiveOperation operation =
+          operations.computeIfAbsent(
+              method,
+              m ->
+                  new PrimitiveOperation(
+                      delegate.name(), primitiveType, m.getName(), delegate.protocol()));
+      if (hedge == null || !operation.isReadOnly()) {
+        return intercept(0, operation, () -> invokeAsync(delegate, method, args), null);
+      }
+      return intercept(
+          0,
+          operation,
+          () -> invokeAsync(delegate, method, args),
+          () -> invokeAsync(hedge, method, args));
+    }
+
+    /**
+     * Invoke the interceptor at {@code index}. A hedge invocation passes through the same
+     * interceptors after that one as the invocation it hedges, but is not hedged again.
+     */
+    private <T> CompletableFuture<T> intercept(
+        int index,
+        PrimitiveOperation operation,
+        Supplier<CompletableFuture<T>> invocation,
+        @Nullable Supplier<CompletableFuture<T>> hedgeInvocation) {
+      if (index == chain.size()) {
+        return invocation.get();
+      }
+      final OperationInterceptor interceptor = chain.get(index);
+      if (hedgeInvocation == null) {
+        return interceptor.intercept(
+            operation, () -> intercept(index + 1, operation, invocation, null));
+      }
+      return interceptor.intercept(
+          operation,
+          () -> intercept(index + 1, operation, invocation, hedgeInvocation),
+          () -> intercept(index + 1, operation, hedgeInvocation, null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> invokeAsync(
+        AsyncPrimitive target, Method method, Object[] args) {
+      try {
+        return (CompletableFuture<T>) invoke(target, method, args);
+      } catch (Throwable t) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+      }
+    }
+
+    private static Object invoke(AsyncPrimitive target, Method method, Object[] args)
+        throws Throwable {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.primitive;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.smoketurner.dropwizard.atomix.bulkhead.BulkheadFactory;
+import com.smoketurner.dropwizard.atomix.policy.PolicyFactory;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import javax.validation.Valid;
+
+public class PrimitiveFactory {
+
+  @Valid @Nullable private BulkheadFactory bulkhead;
+
+  @Valid @Nullable private PolicyFactory policy;
+
+  @JsonProperty
+  public Optional<BulkheadFactory> getBulkhead() {
+    return Optional.ofNullable(bulkhead);
+  }
+
+  @JsonProperty
+  public void setBulkhead(@Nullable BulkheadFactory bulkhead) {
+    this.bulkhead = bulkhead;
+  }
+
+  @JsonProperty
+  public Optional<PolicyFactory> getPolicy() {
+    return Optional.ofNullable(policy);
+  }
+
+  @JsonProperty
+  public void setPolicy(@Nullable PolicyFactory policy) {
+    this.policy = policy;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.primitive;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+import io.atomix.primitive.protocol.PrimitiveProtocol;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+@Immutable
+public final class PrimitiveOperation {
+
+  /** Operations, across all primitive types, which never modify the state of a primitive */
+  private static final ImmutableSet<String> READ_ONLY_OPERATIONS =
+      ImmutableSet.of(
+          "get",
+          "getOrDefault",
+          "size",
+          "isEmpty",
+          "contains",
+          "containsAll",
+          "containsKey",
+          "containsValue",
+          "isLocked",
+          "getLeadership",
+          "availablePermits");
+
+  private final String primitiveName;
+  private final String primitiveType;
+  private final String name;
+  private final boolean readOnly;
+  @Nullable private final PrimitiveProtocol protocol;
+
+  /**
+   * Constructor
+   *
+   * @param primitiveName Name of the primitive
+   * @param primitiveType Type of the primitive
+   * @param name Name of the operation
+   */
+  public PrimitiveOperation(String primitiveName, String primitiveType, String name) {
+    this(primitiveName, primitiveType, name, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param primitiveName Name of the primitive
+   * @param primitiveType Type of the primitive
+   * @param name Name of the operation
+   * @param protocol Protocol the primitive was built with, if known
+   */
+  public PrimitiveOperation(
+      String primitiveName,
+      String primitiveType,
+      String name,
+      @Nullable PrimitiveProtocol protocol) {
+    this.primitiveName = Objects.requireNonNull(primitiveName);
+    this.primitiveType = Objects.requireNonNull(primitiveType);
+    this.name = Objects.requireNonNull(name);
+    this.readOnly = READ_ONLY_OPERATIONS.contains(name);
+    this.protocol = protocol;
+  }
+
+  public String getPrimitiveName() {
+    return primitiveName;
+  }
+
+  public String getPrimitiveType() {
+    return primitiveType;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  @Nullable
+  public PrimitiveProtocol getProtocol() {
+    return protocol;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if ((obj == null) || (getClass() != obj.getClass())) {
+      return false;
+    }
+
+    final PrimitiveOperation other = (PrimitiveOperation) obj;
+    return Objects.equals(primitiveName, other.primitiveName)
+        && Objects.equals(primitiveType, other.primitiveType)
+        && Objects.equals(name, other.name);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(primitiveName, primitiveType, name);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("primitiveName", primitiveName)
+        .add("primitiveType", primitiveType)
+        .add("name", name)
+        .toString();
+  }
+}
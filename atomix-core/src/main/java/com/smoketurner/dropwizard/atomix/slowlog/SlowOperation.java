@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.slowlog;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+import com.smoketurner.dropwizard.atomix.primitive.PrimitiveOperation;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+@Immutable
+public final class SlowOperation {
+
+  private final long timestamp;
+  private final PrimitiveOperation operation;
+  @Nullable private final String partition;
+  @Nullable private final String leader;
+  private final long elapsedNanos;
+  private final boolean failed;
+
+  /**
+   * Constructor
+   *
+   * @param timestamp Time the operation completed, in milliseconds since the epoch
+   * @param operation Operation which was slow
+   * @param partition Partition serving the primitive, if known
+   * @param leader Member leading that partition, if known
+   * @param elapsedNanos Time taken by the operation
+   * @param failed Whether the operation completed exceptionally
+   */
+  public SlowOperation(
+      long timestamp,
+      PrimitiveOperation operation,
+      @Nullable String partition,
+      @Nullable String leader,
+      long elapsedNanos,
+      boolean failed) {
+    this.timestamp = timestamp;
+    this.operation = Objects.requireNonNull(operation);
+    this.partition = partition;
+    this.leader = leader;
+    this.elapsedNanos = elapsedNanos;
+    this.failed = failed;
+  }
+
+  @JsonProperty
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @JsonProperty
+  public String getPrimitiveName() {
+    return operation.getPrimitiveName();
+  }
+
+  @JsonProperty
+  public String getPrimitiveType() {
+    return operation.getPrimitiveType();
+  }
+
+  @JsonProperty
+  public String getOperation() {
+    return operation.getName();
+  }
+
+  @JsonProperty
+  public Optional<String> getPartition() {
+    return Optional.ofNullable(partition);
+  }
+
+  @JsonProperty
+  public Optional<String> getLeader() {
+    return Optional.ofNullable(leader);
+  }
+
+  @JsonProperty
+  public double getElapsedMillis() {
+    return elapsedNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @JsonProperty
+  public boolean isFailed() {
+    return failed;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("timestamp", timestamp)
+        .add("operation", operation)
+        .add("partition", partition)
+        .add("leader", leader)
+        .add("elapsedNanos", elapsedNanos)
+        .add("failed", failed)
+        .toString();
+  }
+}
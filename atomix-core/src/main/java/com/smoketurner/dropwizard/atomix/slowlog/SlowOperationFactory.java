@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.slowlog;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.atomix.core.Atomix;
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class SlowOperationFactory {
+
+  @NotNull private Duration threshold = Duration.milliseconds(100);
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double sampleRate = 1.0;
+
+  @Min(1)
+  private int bufferSize = 100;
+
+  @JsonProperty
+  public Duration getThreshold() {
+    return threshold;
+  }
+
+  @JsonProperty
+  public void setThreshold(Duration threshold) {
+    this.threshold = threshold;
+  }
+
+  @JsonProperty
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  @JsonProperty
+  public void setSampleRate(double rate) {
+    this.sampleRate = rate;
+  }
+
+  @JsonProperty
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  @JsonProperty
+  public void setBufferSize(int size) {
+    this.bufferSize = size;
+  }
+
+  @JsonIgnore
+  public SlowOperationLog build(Atomix atomix) {
+    return new SlowOperationLog(atomix, threshold, sampleRate, bufferSize);
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.slowlog;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.smoketurner.dropwizard.atomix.primitive.OperationInterceptor;
+import com.smoketurner.dropwizard.atomix.primitive.PrimitiveOperation;
+import io.atomix.cluster.MemberId;
+import io.atomix.core.Atomix;
+import io.atomix.primitive.partition.Partition;
+import io.atomix.primitive.partition.PartitionGroup;
+import io.atomix.primitive.partition.PartitionId;
+import io.atomix.primitive.protocol.PrimitiveProtocol;
+import io.atomix.primitive.protocol.ProxyProtocol;
+import io.dropwizard.util.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times a sample of primitive operations and records those slower than a threshold to the {@code
+ * atomix.slow-operations} logger and to a ring buffer of the most recent slow operations.
+ *
+ * <p>Operations which are not sampled, and sampled operations which complete before they return,
+ * are timed without allocating. Any other sampled operation is timed by a completion callback
+ * taken from a pool, so no callback is allocated per call, but {@link
+ * CompletableFuture#whenComplete} still allocates its dependent future. The partition and leader
+ * lookups and the record itself are only created for slow operations.
+ *
+ * <p>The reported partition is the one the primitive name maps to. That partition serves every
+ * operation of single-partition primitives such as counters, values and locks, but primitives
+ * such as maps and sets partition their entries by key, so for those the partition (and leader) is
+ * only reported when their partition group has a single partition.
+ */
+public class SlowOperationLog implements OperationInterceptor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("atomix.slow-operations");
+
+  /** Primitive types whose operations are all served by the partition their name maps to */
+  private static final ImmutableSet<String> SINGLE_PARTITION_TYPES =
+      ImmutableSet.of(
+          "atomic-counter",
+          "atomic-value",
+          "atomic-lock",
+          "atomic-semaphore",
+          "atomic-id-generator",
+          "leader-election",
+          "work-queue");
+
+  private static final int TIMING_POOL_SIZE = 256;
+  private static final int TIMING_POOL_PROBES = 8;
+
+  private final Atomix atomix;
+  private final long thresholdNanos;
+  private final double sampleRate;
+  private final AtomicReferenceArray<Entry> buffer;
+  private final AtomicLong sequence = new AtomicLong();
+  private final AtomicReferenceArray<Timing> timings =
+      new AtomicReferenceArray<>(TIMING_POOL_SIZE);
+
+  /**
+   * Constructor
+   *
+   * @param atomix Atomix instance used to look up partition leaders
+   * @param threshold Operations taking at least this long are recorded
+   * @param sampleRate Fraction of operations to time
+   * @param bufferSize Number of recent slow operations to retain
+   */
+  public SlowOperationLog(
+      final Atomix atomix,
+      final Duration threshold,
+      final double sampleRate,
+      final int bufferSize) {
+    this.atomix = Objects.requireNonNull(atomix);
+    this.thresholdNanos = threshold.toNanoseconds();
+    this.sampleRate = sampleRate;
+    this.buffer = new AtomicReferenceArray<>(bufferSize);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> intercept(
+      final PrimitiveOperation operation, final Supplier<CompletableFuture<T>> invocation) {
+    if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      return invocation.get();
+    }
+
+    final long startTime = System.nanoTime();
+    final CompletableFuture<T> future = invocation.get();
+    if (future.isDone()) {
+      complete(operation, startTime, future.isCompletedExceptionally());
+      return future;
+    }
+
+    final Timing timing = acquireTiming();
+    timing.operation = operation;
+    timing.startTime = startTime;
+    future.whenComplete(timing);
+    return future;
+  }
+
+  /**
+   * Return the most recent slow operations, newest first.
+   *
+   * @return recent slow operations
+   */
+  public List<SlowOperation> getRecent() {
+    final long last = sequence.get();
+    final int count = (int) Math.min(last, buffer.length());
+
+    final ImmutableList.Builder<SlowOperation> operations = ImmutableList.builder();
+    for (long i = last - 1; i >= last - count; i--) {
+      final Entry entry = buffer.get((int) (i % buffer.length()));
+      // skip slots whose record is still being written or has already been overwritten
+      if (entry != null && entry.sequence == i) {
+        operations.add(entry.operation);
+      }
+    }
+    return operations.build();
+  }
+
+  private void complete(
+      final PrimitiveOperation operation, final long startTime, final boolean failed) {
+    final long elapsed = System.nanoTime() - startTime;
+    if (elapsed >= thresholdNanos) {
+      record(operation, elapsed, failed);
+    }
+  }
+
+  private void record(
+      final PrimitiveOperation operation, final long elapsed, final boolean failed) {
+    String partitionName = null;
+    String leaderName = null;
+
+    final Partition partition = getPartition(operation);
+    if (partition != null) {
+      partitionName = partition.id().group() + "-" + partition.id().id();
+      final MemberId leader = partition.primary();
+      if (leader != null) {
+        leaderName = leader.id();
+      }
+    }
+
+    final SlowOperation slow =
+        new SlowOperation(
+            System.currentTimeMillis(), operation, partitionName, leaderName, elapsed, failed);
+    final long position = sequence.getAndIncrement();
+    buffer.set((int) (position % buffer.length()), new Entry(position, slow));
+
+    LOGGER.warn(
+        "{} {}.{} took {}ms (partition: {}, leader: {}, failed: {})",
+        operation.getPrimitiveType(),
+        operation.getPrimitiveName(),
+        operation.getName(),
+        String.format("%.3f", slow.getElapsedMillis()),
+        partitionName,
+        leaderName,
+        failed);
+  }
+
+  @Nullable
+  private Partition getPartition(final PrimitiveOperation operation) {
+    final PrimitiveProtocol protocol = operation.getProtocol();
+    if (!(protocol instanceof ProxyProtocol)) {
+      return null;
+    }
+
+    try {
+      final ProxyProtocol proxyProtocol = (ProxyProtocol) protocol;
+      final PartitionGroup group =
+          atomix.getPartitionService().getPartitionGroup(proxyProtocol.group());
+      if (group == null) {
+        return null;
+      }
+
+      final List<PartitionId> partitionIds = new ArrayList<>(group.getPartitionIds());
+      if (partitionIds.size() != 1
+          && !SINGLE_PARTITION_TYPES.contains(operation.getPrimitiveType())) {
+        // entries are partitioned by key, so the name does not identify the partition
+        return null;
+      }
+      Collections.sort(partitionIds);
+      final PartitionId partitionId =
+          proxyProtocol.partitioner().partition(operation.getPrimitiveName(), partitionIds);
+      return group.getPartition(partitionId);
+    } catch (RuntimeException e) {
+      LOGGER.debug("Unable to determine partition for {}", operation, e);
+      return null;
+    }
+  }
+
+  private Timing acquireTiming() {
+    final int start = ThreadLocalRandom.current().nextInt(TIMING_POOL_SIZE);
+    for (int i = 0; i < TIMING_POOL_PROBES; i++) {
+      final int index = (start + i) % TIMING_POOL_SIZE;
+      final Timing timing = timings.get(index);
+      if (timing != null && timings.compareAndSet(index, timing, null)) {
+        return timing;
+      }
+    }
+    return new Timing();
+  }
+
+  private void releaseTiming(final Timing timing) {
+    timing.operation = null;
+    final int start = ThreadLocalRandom.current().nextInt(TIMING_POOL_SIZE);
+    for (int i = 0; i < TIMING_POOL_PROBES; i++) {
+      if (timings.compareAndSet((start + i) % TIMING_POOL_SIZE, null, timing)) {
+        return;
+      }
+    }
+    // the pool is full, so let this one be collected
+  }
+
+  /** Times one operation at a time, and is returned to the pool once that operation completes */
+  private final class Timing implements BiConsumer<Object, Throwable> {
+    @Nullable private PrimitiveOperation operation;
+    private long startTime;
+
+    @Override
+    public void accept(final Object result, final Throwable error) {
+      // read the fields before releasing, since another operation may take this timing at once
+      final PrimitiveOperation timed = operation;
+      final long started = startTime;
+      releaseTiming(this);
+      if (timed != null) {
+        complete(timed, started, error != null);
+      }
+    }
+  }
+
+  /** A slow operation tagged with its position in the sequence of recorded operations */
+  private static final class Entry {
+    private final long sequence;
+    private final SlowOperation operation;
+
+    Entry(long sequence, SlowOperation operation) {
+      this.sequence = sequence;
+      this.operation = operation;
+    }
+  }
+}
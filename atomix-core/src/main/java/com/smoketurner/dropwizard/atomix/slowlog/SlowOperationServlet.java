@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.slowlog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Admin servlet listing the most recent slow primitive operations as JSON. */
+public class SlowOperationServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CONTENT_TYPE = "application/json";
+
+  private final transient SlowOperationLog slowOperations;
+  private final transient ObjectMapper mapper;
+
+  /**
+   * Constructor
+   *
+   * @param slowOperations Slow operation log
+   * @param mapper Object mapper
+   */
+  public SlowOperationServlet(final SlowOperationLog slowOperations, final ObjectMapper mapper) {
+    this.slowOperations = Objects.requireNonNull(slowOperations);
+    this.mapper = Objects.requireNonNull(mapper);
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    resp.setContentType(CONTENT_TYPE);
+    resp.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+    resp.setStatus(HttpServletResponse.SC_OK);
+
+    try (OutputStream output = resp.getOutputStream()) {
+      mapper.writerWithDefaultPrettyPrinter().writeValue(output, slowOperations.getRecent());
+    }
+  }
+}
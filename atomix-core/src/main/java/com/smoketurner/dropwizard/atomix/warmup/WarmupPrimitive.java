@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.warmup;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+import io.atomix.core.Atomix;
+import io.atomix.core.counter.AtomicCounterType;
+import io.atomix.core.lock.AtomicLockType;
+import io.atomix.core.map.AtomicMapType;
+import io.atomix.core.map.DistributedMapType;
+import io.atomix.core.set.DistributedSetType;
+import io.atomix.core.value.AtomicValueType;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.concurrent.Immutable;
+import javax.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.NotEmpty;
+
+@Immutable
+public final class WarmupPrimitive {
+
+  /** Primitive types which can be opened and read during warm-up */
+  public enum Type {
+    ATOMIC_COUNTER {
+      @Override
+      public CompletableFuture<?> warmup(Atomix atomix, String name) {
+        return atomix
+            .getPrimitiveAsync(name, AtomicCounterType.instance())
+            .thenCompose(counter -> counter.async().get());
+      }
+    },
+    ATOMIC_MAP {
+      @Override
+      public CompletableFuture<?> warmup(Atomix atomix, String name) {
+        return atomix
+            .getPrimitiveAsync(name, AtomicMapType.instance())
+            .thenCompose(map -> map.async().size());
+      }
+    },
+    MAP {
+      @Override
+      public CompletableFuture<?> warmup(Atomix atomix, String name) {
+        return atomix
+            .getPrimitiveAsync(name, DistributedMapType.instance())
+            .thenCompose(map -> map.async().size());
+      }
+    },
+    ATOMIC_VALUE {
+      @Override
+      public CompletableFuture<?> warmup(Atomix atomix, String name) {
+        return atomix
+            .getPrimitiveAsync(name, AtomicValueType.instance())
+            .thenCompose(value -> value.async().get());
+      }
+    },
+    SET {
+      @Override
+      public CompletableFuture<?> warmup(Atomix atomix, String name) {
+        return atomix
+            .getPrimitiveAsync(name, DistributedSetType.instance())
+            .thenCompose(set -> set.async().size());
+      }
+    },
+    ATOMIC_LOCK {
+      @Override
+      public CompletableFuture<?> warmup(Atomix atomix, String name) {
+        return atomix
+            .getPrimitiveAsync(name, AtomicLockType.instance())
+            .thenCompose(lock -> lock.async().isLocked());
+      }
+    };
+
+    /**
+     * Open the named primitive through the primitive cache and issue a no-op read against it, so
+     * later lookups by the same name through the cached getters (such as {@link
+     * Atomix#getAtomicCounter(String)}) re-use an already established session. Primitives built
+     * with a primitive builder always open a new session and are not warmed up.
+     *
+     * @param atomix Atomix instance
+     * @param name Primitive name
+     * @return future which completes once the read has returned
+     */
+    public abstract CompletableFuture<?> warmup(Atomix atomix, String name);
+  }
+
+  @NotEmpty private final String name;
+
+  @NotNull private final Type type;
+
+  @JsonCreator
+  public WarmupPrimitive(@JsonProperty("name") String name, @JsonProperty("type") Type type) {
+    this.name = name;
+    this.type = type;
+  }
+
+  @JsonProperty
+  public String getName() {
+    return name;
+  }
+
+  @JsonProperty
+  public Type getType() {
+    return type;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if ((obj == null) || (getClass() != obj.getClass())) {
+      return false;
+    }
+
+    final WarmupPrimitive other = (WarmupPrimitive) obj;
+    return Objects.equals(name, other.name) && type == other.type;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(name, type);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("name", name).add("type", type).toString();
+  }
+}
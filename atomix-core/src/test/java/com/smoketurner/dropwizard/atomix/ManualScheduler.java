@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduler whose delayed tasks only run when a test runs them, so timeouts, retries and other
+ * scheduled work can be driven deterministically. Only the one-shot {@code schedule} methods are
+ * supported.
+ */
+public class ManualScheduler extends ScheduledThreadPoolExecutor {
+
+  private final List<Task<?>> tasks = new ArrayList<>();
+  private boolean rejecting;
+
+  public ManualScheduler() {
+    super(1);
+  }
+
+  /** Reject every task scheduled from now on, as a scheduler which has been shut down does */
+  public void reject() {
+    rejecting = true;
+  }
+
+  @Override
+  public synchronized ScheduledFuture<?> schedule(
+      final Runnable command, final long delay, final TimeUnit unit) {
+    return schedule(
+        () -> {
+          command.run();
+          return null;
+        },
+        delay,
+        unit);
+  }
+
+  @Override
+  public synchronized <V> ScheduledFuture<V> schedule(
+      final Callable<V> callable, final long delay, final TimeUnit unit) {
+    if (rejecting) {
+      throw new RejectedExecutionException("scheduler has been shut down");
+    }
+    final Task<V> task = new Task<>(callable, unit.toNanos(delay));
+    tasks.add(task);
+    return task;
+  }
+
+  /** @return the delays, in nanoseconds, of every task scheduled so far */
+  public synchronized List<Long> getDelays() {
+    final List<Long> delays = new ArrayList<>();
+    tasks.forEach(task -> delays.add(task.delayNanos));
+    return delays;
+  }
+
+  /** @return the number of scheduled tasks which have neither run nor been cancelled */
+  public synchronized int getPending() {
+    return (int) tasks.stream().filter(task -> !task.isDone()).count();
+  }
+
+  /**
+   * Run the first pending task, in the order the tasks were scheduled.
+   *
+   * @return whether there was a task to run
+   */
+  public boolean runNext() {
+    final Task<?> task = nextPending();
+    if (task == null) {
+      return false;
+    }
+    task.run();
+    return true;
+  }
+
+  /**
+   * Run the pending tasks, in the order they were scheduled, including any scheduled while they
+   * run.
+   *
+   * @return the number of tasks run
+   */
+  public int runPending() {
+    int run = 0;
+    Task<?> task;
+    while ((task = nextPending()) != null) {
+      task.run();
+      run++;
+    }
+    return run;
+  }
+
+  private synchronized Task<?> nextPending() {
+    return tasks.stream().filter(task -> !task.isDone()).findFirst().orElse(null);
+  }
+
+  private static final class Task<V> implements ScheduledFuture<V> {
+    private final Callable<V> callable;
+    private final long delayNanos;
+    private boolean done;
+    private boolean cancelled;
+
+    Task(Callable<V> callable, long delayNanos) {
+      this.callable = callable;
+      this.delayNanos = delayNanos;
+    }
+
+    void run() {
+      synchronized (this) {
+        if (done) {
+          return;
+        }
+        done = true;
+      }
+      try {
+        callable.call();
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(delayNanos, other.getDelay(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+      if (done) {
+        return false;
+      }
+      done = true;
+      cancelled = true;
+      return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+      return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+      return done;
+    }
+
+    @Override
+    public V get() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
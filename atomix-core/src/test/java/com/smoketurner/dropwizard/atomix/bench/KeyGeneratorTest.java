@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.bench;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+class KeyGeneratorTest {
+
+  private static final int SAMPLES = 200_000;
+
+  @Test
+  void testUniformKeysAreInRangeAndEvenlySpread() {
+    final int[] counts = sample(KeyGenerator.uniform(10), 10);
+
+    for (int count : counts) {
+      assertThat(count / (double) SAMPLES).isCloseTo(0.1, within(0.01));
+    }
+  }
+
+  @Test
+  void testZipfianKeysAreInRangeAndSkewedTowardsLowKeys() {
+    final int keys = 1000;
+    final double theta = 0.99;
+    final int[] counts = sample(KeyGenerator.zipfian(keys, theta), keys);
+
+    // key 0 has probability 1 / zeta(n, theta) and key 1 has half that to the power theta
+    final double zetan = zeta(keys, theta);
+    assertThat(counts[0] / (double) SAMPLES).isCloseTo(1 / zetan, within(0.01));
+    assertThat(counts[1] / (double) SAMPLES)
+        .isCloseTo(1 / (Math.pow(2, theta) * zetan), within(0.01));
+    assertThat(counts[0]).isGreaterThan(counts[1]);
+    assertThat(counts[1]).isGreaterThan(counts[10]);
+    assertThat(counts[10]).isGreaterThan(counts[keys - 1]);
+  }
+
+  @Test
+  void testZipfianWithFewKeys() {
+    assertThat(sample(KeyGenerator.zipfian(1, 0.5), 1)[0]).isEqualTo(SAMPLES);
+
+    final int[] counts = sample(KeyGenerator.zipfian(2, 0.5), 2);
+    assertThat(counts[0] + counts[1]).isEqualTo(SAMPLES);
+    assertThat(counts[0]).isGreaterThan(counts[1]);
+  }
+
+  @Test
+  void testRejectsInvalidExponent() {
+    assertThatThrownBy(() -> KeyGenerator.zipfian(10, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> KeyGenerator.zipfian(10, 1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /** Draw keys, failing if any is out of range, and return the number of draws of each key */
+  private static int[] sample(KeyGenerator generator, int keys) {
+    final int[] counts = new int[keys];
+    for (int i = 0; i < SAMPLES; i++) {
+      final int key = generator.next();
+      assertThat(key).isBetween(0, keys - 1);
+      counts[key]++;
+    }
+    return counts;
+  }
+
+  private static double zeta(int n, double theta) {
+    double sum = 0;
+    for (int i = 1; i <= n; i++) {
+      sum += 1 / Math.pow(i, theta);
+    }
+    return sum;
+  }
+}
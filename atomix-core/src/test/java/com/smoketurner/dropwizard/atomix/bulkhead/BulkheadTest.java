@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.bulkhead;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.dropwizard.atomix.primitive.PrimitiveOperation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class BulkheadTest {
+
+  private static final PrimitiveOperation OPERATION =
+      new PrimitiveOperation("counter", "atomic-counter", "incrementAndGet");
+
+  private final List<CompletableFuture<String>> started = new ArrayList<>();
+  private final Supplier<CompletableFuture<String>> invocation =
+      () -> {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        started.add(future);
+        return future;
+      };
+
+  private Bulkhead bulkhead(int maxConcurrentOperations, int maxQueuedOperations) {
+    return new Bulkhead(
+        "counter", maxConcurrentOperations, maxQueuedOperations, new MetricRegistry());
+  }
+
+  @Test
+  void testRejectsOperationsBeyondTheLimit() {
+    final Bulkhead bulkhead = bulkhead(2, 0);
+
+    bulkhead.intercept(OPERATION, invocation);
+    bulkhead.intercept(OPERATION, invocation);
+    final CompletableFuture<String> rejected = bulkhead.intercept(OPERATION, invocation);
+
+    assertThat(started).hasSize(2);
+    assertThat(bulkhead.getInFlight()).isEqualTo(2);
+    assertThat(rejected.isCompletedExceptionally()).isTrue();
+    assertThat(rejected.handle((result, error) -> error).join())
+        .isInstanceOf(BulkheadFullException.class);
+  }
+
+  @Test
+  void testRunsQueuedOperationsInOrderAsPermitsAreReleased() {
+    final Bulkhead bulkhead = bulkhead(1, 2);
+
+    final CompletableFuture<String> first = bulkhead.intercept(OPERATION, invocation);
+    final CompletableFuture<String> second = bulkhead.intercept(OPERATION, invocation);
+    final CompletableFuture<String> third = bulkhead.intercept(OPERATION, invocation);
+    assertThat(started).hasSize(1);
+    assertThat(bulkhead.getQueued()).isEqualTo(2);
+
+    started.get(0).complete("first");
+    assertThat(first.join()).isEqualTo("first");
+    assertThat(started).hasSize(2);
+    assertThat(bulkhead.getQueued()).isEqualTo(1);
+
+    started.get(1).complete("second");
+    started.get(2).complete("third");
+    assertThat(second.join()).isEqualTo("second");
+    assertThat(third.join()).isEqualTo("third");
+    assertThat(bulkhead.getInFlight()).isEqualTo(0);
+    assertThat(bulkhead.getQueued()).isEqualTo(0);
+  }
+
+  @Test
+  void testNewCallersQueueBehindWaitingOperations() {
+    final Bulkhead bulkhead = bulkhead(1, 2);
+
+    bulkhead.intercept(OPERATION, invocation);
+    final CompletableFuture<String> queued = bulkhead.intercept(OPERATION, invocation);
+    final CompletableFuture<String> later = bulkhead.intercept(OPERATION, invocation);
+    assertThat(bulkhead.getQueued()).isEqualTo(2);
+
+    started.get(0).complete("first");
+    started.get(1).complete("queued");
+    assertThat(queued.join()).isEqualTo("queued");
+    assertThat(later.isDone()).isFalse();
+  }
+
+  @Test
+  void testSkipsQueuedOperationsWhoseCallerGaveUp() {
+    final Bulkhead bulkhead = bulkhead(1, 1);
+
+    bulkhead.intercept(OPERATION, invocation);
+    final CompletableFuture<String> queued = bulkhead.intercept(OPERATION, invocation);
+    queued.cancel(false);
+
+    started.get(0).complete("first");
+    assertThat(started).hasSize(1);
+    assertThat(bulkhead.getInFlight()).isEqualTo(0);
+    assertThat(bulkhead.getQueued()).isEqualTo(0);
+  }
+
+  @Test
+  void testReleasesPermitWhenTheReturnedFutureIsCancelled() {
+    final Bulkhead bulkhead = bulkhead(1, 0);
+
+    bulkhead.intercept(OPERATION, invocation).cancel(false);
+
+    assertThat(bulkhead.getInFlight()).isEqualTo(0);
+    assertThat(bulkhead.intercept(OPERATION, invocation).isCompletedExceptionally()).isFalse();
+  }
+
+  @Test
+  void testReleasesPermitWhenTheInvocationThrows() {
+    final Bulkhead bulkhead = bulkhead(1, 0);
+    final AtomicInteger calls = new AtomicInteger();
+
+    final CompletableFuture<String> failed =
+        bulkhead.intercept(
+            OPERATION,
+            () -> {
+              calls.incrementAndGet();
+              throw new IllegalStateException("closed");
+            });
+
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(failed.isCompletedExceptionally()).isTrue();
+    assertThat(bulkhead.getInFlight()).isEqualTo(0);
+  }
+
+  @Test
+  void testPropagatesFailuresOfQueuedOperations() {
+    final Bulkhead bulkhead = bulkhead(1, 1);
+
+    bulkhead.intercept(OPERATION, invocation);
+    final CompletableFuture<String> queued = bulkhead.intercept(OPERATION, invocation);
+    started.get(0).complete("first");
+    started.get(1).completeExceptionally(new IllegalStateException("failed"));
+
+    assertThat(queued.handle((result, error) -> error).join())
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(bulkhead.getInFlight()).isEqualTo(0);
+  }
+
+  @Test
+  void testRunsAQueueOfSynchronousFailuresWithoutRecursing() {
+    final int queueSize = 100_000;
+    final Bulkhead bulkhead = bulkhead(1, queueSize);
+    final AtomicInteger calls = new AtomicInteger();
+    final Supplier<CompletableFuture<String>> failing =
+        () -> {
+          calls.incrementAndGet();
+          throw new IllegalStateException("closed");
+        };
+
+    bulkhead.intercept(OPERATION, invocation);
+    final List<CompletableFuture<String>> queued = new ArrayList<>();
+    for (int i = 0; i < queueSize; i++) {
+      queued.add(bulkhead.intercept(OPERATION, failing));
+    }
+    started.get(0).complete("first");
+
+    assertThat(calls.get()).isEqualTo(queueSize);
+    assertThat(queued.stream().allMatch(CompletableFuture::isCompletedExceptionally)).isTrue();
+    assertThat(bulkhead.getInFlight()).isEqualTo(0);
+    assertThat(bulkhead.getQueued()).isEqualTo(0);
+  }
+}
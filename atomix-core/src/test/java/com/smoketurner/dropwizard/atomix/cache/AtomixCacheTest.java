@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.atomix.core.map.AsyncAtomicMap;
+import io.dropwizard.util.Duration;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class AtomixCacheTest {
+
+  private static final int COMPRESSION_THRESHOLD = 64;
+
+  private final InMemoryAsyncAtomicMap map = new InMemoryAsyncAtomicMap();
+  private final MetricRegistry metrics = new MetricRegistry();
+
+  private AtomixCache cache(
+      Supplier<CompletableFuture<AsyncAtomicMap<String, byte[]>>> opener,
+      MetricRegistry registry) {
+    return new AtomixCache(
+        opener,
+        "cache",
+        Duration.hours(1),
+        100,
+        Duration.minutes(1),
+        COMPRESSION_THRESHOLD,
+        2,
+        registry);
+  }
+
+  /** @return a cache on this node */
+  private AtomixCache cache() {
+    return cache(() -> CompletableFuture.completedFuture(map.proxy()), metrics);
+  }
+
+  /** @return a cache on another node, sharing the map but not the local cache or metrics */
+  private AtomixCache otherNode() {
+    return cache(() -> CompletableFuture.completedFuture(map.proxy()), new MetricRegistry());
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(byte[] value) {
+    return new String(value, StandardCharsets.UTF_8);
+  }
+
+  private long count(String meter) {
+    return metrics.meter("atomix.cache.cache." + meter).getCount();
+  }
+
+  @Test
+  void testStoresValuesUpToTheThresholdUncompressed() {
+    final String value = Strings.repeat("a", COMPRESSION_THRESHOLD);
+    cache().put("key", bytes(value)).join();
+
+    final byte[] stored = map.getStored("key");
+    assertThat(stored.length).isEqualTo(COMPRESSION_THRESHOLD + 1);
+    assertThat(stored[0]).isEqualTo((byte) 0);
+    assertThat(count("compressed")).isEqualTo(0);
+    assertThat(string(otherNode().get("key").join().get())).isEqualTo(value);
+  }
+
+  @Test
+  void testCompressesValuesAboveTheThreshold() {
+    final String value = Strings.repeat("a", COMPRESSION_THRESHOLD + 1);
+    cache().put("key", bytes(value)).join();
+
+    assertThat(map.getStored("key")[0]).isEqualTo((byte) 1);
+    assertThat(count("compressed")).isEqualTo(1);
+    assertThat(string(otherNode().get("key").join().get())).isEqualTo(value);
+  }
+
+  @Test
+  void testRoundTripsLargeAndEmptyValues() {
+    final String large = Strings.repeat("abcdefgh", 10000);
+    cache().putAll(ImmutableMap.of("large", bytes(large), "empty", new byte[0])).join();
+
+    assertThat(map.getStored("large").length).isLessThan(large.length());
+    final Map<String, byte[]> values =
+        otherNode().getAll(ImmutableList.of("large", "empty")).join();
+    assertThat(string(values.get("large"))).isEqualTo(large);
+    assertThat(values.get("empty").length).isEqualTo(0);
+  }
+
+  @Test
+  void testGetAllOnlyRequestsKeysMissingFromTheLocalCache() {
+    final ImmutableMap.Builder<String, byte[]> stored = ImmutableMap.builder();
+    for (String key : ImmutableList.of("a", "b", "c", "d", "e")) {
+      stored.put(key, bytes(key.toUpperCase(Locale.ENGLISH)));
+    }
+    otherNode().putAll(stored.build()).join();
+    final AtomixCache cache = cache();
+    cache.get("a").join();
+    cache.get("c").join();
+
+    final Map<String, byte[]> values =
+        cache.getAll(ImmutableList.of("a", "b", "c", "d", "e", "missing")).join();
+
+    assertThat(values.keySet()).containsExactly("a", "c", "b", "d", "e");
+    assertThat(string(values.get("b"))).isEqualTo("B");
+    assertThat(string(values.get("c"))).isEqualTo("C");
+    // the local values are not requested again, and the rest are requested in batches
+    assertThat(map.getBulkRequests())
+        .containsExactly(ImmutableList.of("b", "d"), ImmutableList.of("e", "missing"));
+    assertThat(count("local-hits")).isEqualTo(2);
+    assertThat(count("remote-hits")).isEqualTo(5);
+    assertThat(count("misses")).isEqualTo(1);
+  }
+
+  @Test
+  void testGetAllSkipsTheClusterWhenEveryValueIsLocal() {
+    final AtomixCache cache = cache();
+    cache.putAll(ImmutableMap.of("a", bytes("1"), "b", bytes("2"))).join();
+    final int calls = map.getCalls();
+
+    final Map<String, byte[]> values = cache.getAll(ImmutableList.of("a", "b")).join();
+
+    assertThat(values.keySet()).containsExactly("a", "b");
+    assertThat(map.getCalls()).isEqualTo(calls);
+  }
+
+  @Test
+  void testRetriesOpeningTheMapAfterAFailure() {
+    final AtomicInteger opens = new AtomicInteger();
+    final AtomixCache cache =
+        cache(
+            () -> {
+              switch (opens.incrementAndGet()) {
+                case 1:
+                  throw new IllegalStateException("not started");
+                case 2:
+                  final CompletableFuture<AsyncAtomicMap<String, byte[]>> failed =
+                      new CompletableFuture<>();
+                  failed.completeExceptionally(new IllegalStateException("no leader"));
+                  return failed;
+                default:
+                  return CompletableFuture.completedFuture(map.proxy());
+              }
+            },
+            metrics);
+
+    assertThat(cache.get("key").isCompletedExceptionally()).isTrue();
+    assertThat(cache.get("key").isCompletedExceptionally()).isTrue();
+    assertThat(cache.get("key").join().isPresent()).isFalse();
+    cache.put("key", bytes("value")).join();
+
+    // only the map which opened successfully is kept
+    assertThat(opens.get()).isEqualTo(3);
+    assertThat(string(otherNode().get("key").join().get())).isEqualTo("value");
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.cache;
+
+import com.google.common.collect.ImmutableList;
+import io.atomix.core.map.AsyncAtomicMap;
+import io.atomix.utils.time.Versioned;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An in-memory stand-in for the operations {@link AtomixCache} makes against an {@link
+ * AsyncAtomicMap}, completing every operation immediately. Any other operation fails.
+ */
+class InMemoryAsyncAtomicMap {
+
+  private final Map<String, byte[]> values = new HashMap<>();
+  private final List<List<String>> bulkRequests = new ArrayList<>();
+  private int calls;
+
+  @SuppressWarnings("unchecked")
+  AsyncAtomicMap<String, byte[]> proxy() {
+    return (AsyncAtomicMap<String, byte[]>)
+        Proxy.newProxyInstance(
+            AsyncAtomicMap.class.getClassLoader(),
+            new Class<?>[] {AsyncAtomicMap.class},
+            (proxy, method, args) -> invoke(method, args));
+  }
+
+  /** @return the number of operations made against the map */
+  synchronized int getCalls() {
+    return calls;
+  }
+
+  /** @return the keys of every bulk read, in the order they were requested */
+  synchronized List<List<String>> getBulkRequests() {
+    return new ArrayList<>(bulkRequests);
+  }
+
+  /** @return the value stored under a key, as encoded by the cache */
+  synchronized byte[] getStored(String key) {
+    return values.get(key);
+  }
+
+  @SuppressWarnings("unchecked")
+  private synchronized Object invoke(Method method, Object[] args) {
+    if (method.getDeclaringClass() == Object.class) {
+      throw new UnsupportedOperationException(method.getName());
+    }
+    calls++;
+    final String signature = method.getName() + "/" + args.length;
+    switch (signature) {
+      case "get/1":
+        return CompletableFuture.completedFuture(versioned(values.get((String) args[0])));
+      case "put/3":
+        return CompletableFuture.completedFuture(
+            versioned(values.put((String) args[0], (byte[]) args[1])));
+      case "remove/1":
+        return CompletableFuture.completedFuture(versioned(values.remove((String) args[0])));
+      case "getAllPresent/1":
+        final List<String> keys = ImmutableList.copyOf((Iterable<String>) args[0]);
+        bulkRequests.add(keys);
+        final Map<String, Versioned<byte[]>> present = new LinkedHashMap<>();
+        keys.stream()
+            .filter(values::containsKey)
+            .forEach(key -> present.put(key, versioned(values.get(key))));
+        return CompletableFuture.completedFuture(present);
+      default:
+        throw new UnsupportedOperationException(signature);
+    }
+  }
+
+  private static Versioned<byte[]> versioned(byte[] value) {
+    return value == null ? null : new Versioned<>(value, 1, System.currentTimeMillis());
+  }
+}
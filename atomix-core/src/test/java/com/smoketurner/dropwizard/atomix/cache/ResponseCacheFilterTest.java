@@ -0,0 +1,299 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.junit.jupiter.api.Test;
+
+class ResponseCacheFilterTest {
+
+  private final InMemoryAsyncAtomicMap map = new InMemoryAsyncAtomicMap();
+  private final AtomixCache cache =
+      new AtomixCache(
+          () -> CompletableFuture.completedFuture(map.proxy()),
+          "responses",
+          Duration.minutes(5),
+          100,
+          Duration.seconds(5),
+          1024,
+          100,
+          new MetricRegistry());
+
+  private ResponseCacheFilter filter(String... varyHeaders) {
+    final Set<String> headers = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    Collections.addAll(headers, varyHeaders);
+    return new ResponseCacheFilter(cache, headers, Duration.seconds(1), Jackson.newObjectMapper());
+  }
+
+  private static ContainerRequest request(String... headers) {
+    final ContainerRequest request =
+        new ContainerRequest(
+            URI.create("http://localhost/"),
+            URI.create("http://localhost/orders"),
+            "GET",
+            null,
+            new MapPropertiesDelegate());
+    for (int i = 0; i < headers.length; i += 2) {
+      request.header(headers[i], headers[i + 1]);
+    }
+    return request;
+  }
+
+  /**
+   * Run a request through the filter, responding with the given response if it is not served
+   * from the cache.
+   *
+   * @return the cached response which was replayed, or null if the request was not served from
+   *     the cache
+   */
+  @Nullable
+  private static Response process(
+      ResponseCacheFilter filter, ContainerRequest request, Response response) throws IOException {
+    filter.filter(request);
+    if (request.getAbortResponse() != null) {
+      return request.getAbortResponse();
+    }
+    final ContainerResponse containerResponse = new ContainerResponse(request, response);
+    filter.filter(request, containerResponse);
+    if (containerResponse.hasEntity()) {
+      filter.aroundWriteTo(new WriterContext(request, containerResponse, null));
+    }
+    return null;
+  }
+
+  private static Response ok() {
+    return Response.ok("orders").build();
+  }
+
+  @Test
+  void testReplaysCachedResponses() throws Exception {
+    final ResponseCacheFilter filter = filter();
+    assertThat(process(filter, request(), ok())).isNull();
+
+    final Response replayed = process(filter, request(), ok());
+
+    assertThat(replayed.getStatus()).isEqualTo(200);
+    assertThat(replayed.getHeaderString(ResponseCacheFilter.CACHE_HEADER)).isEqualTo("HIT");
+    assertThat(new String((byte[]) replayed.getEntity(), StandardCharsets.UTF_8))
+        .isEqualTo("orders");
+  }
+
+  @Test
+  void testSkipsRequestsWithCredentials() throws Exception {
+    final ResponseCacheFilter filter = filter();
+    process(filter, request(), ok());
+    final int calls = map.getCalls();
+
+    assertThat(process(filter, request(HttpHeaders.AUTHORIZATION, "Bearer a"), ok())).isNull();
+    assertThat(process(filter, request(HttpHeaders.COOKIE, "session=a"), ok())).isNull();
+    assertThat(map.getCalls()).isEqualTo(calls);
+  }
+
+  @Test
+  void testCachesRequestsWithCredentialsInTheKey() throws Exception {
+    final ResponseCacheFilter filter = filter("authorization");
+    process(filter, request(HttpHeaders.AUTHORIZATION, "Bearer a"), ok());
+
+    assertThat(process(filter, request(HttpHeaders.AUTHORIZATION, "Bearer a"), ok())).isNotNull();
+    assertThat(process(filter, request(HttpHeaders.AUTHORIZATION, "Bearer b"), ok())).isNull();
+  }
+
+  @Test
+  void testDoesNotCacheResponsesSettingCookies() throws Exception {
+    final ResponseCacheFilter filter = filter();
+    process(
+        filter, request(), Response.ok("orders").header(HttpHeaders.SET_COOKIE, "a=b").build());
+
+    assertThat(process(filter, request(), ok())).isNull();
+  }
+
+  @Test
+  void testDoesNotCacheCookiesAddedWhileWriting() throws Exception {
+    final ResponseCacheFilter filter = filter();
+    final ContainerRequest request = request();
+    filter.filter(request);
+    final ContainerResponse response = new ContainerResponse(request, ok());
+    filter.filter(request, response);
+    filter.aroundWriteTo(
+        new WriterContext(
+            request, response, () -> response.getHeaders().add(HttpHeaders.SET_COOKIE, "a=b")));
+
+    assertThat(process(filter, request(), ok())).isNull();
+  }
+
+  @Test
+  void testDoesNotCachePrivateResponses() throws Exception {
+    final ResponseCacheFilter filter = filter();
+    process(
+        filter,
+        request(),
+        Response.ok("orders").header(HttpHeaders.CACHE_CONTROL, "private, max-age=60").build());
+
+    assertThat(process(filter, request(), ok())).isNull();
+  }
+
+  @Test
+  void testDoesNotCacheNoStoreResponses() throws Exception {
+    final ResponseCacheFilter filter = filter();
+    process(
+        filter,
+        request(),
+        Response.ok("orders").header(HttpHeaders.CACHE_CONTROL, "no-store").build());
+
+    assertThat(process(filter, request(), ok())).isNull();
+  }
+
+  @Test
+  void testDoesNotCacheUnsuccessfulResponses() throws Exception {
+    final ResponseCacheFilter filter = filter();
+    process(filter, request(), Response.status(404).entity("missing").build());
+
+    assertThat(process(filter, request(), ok())).isNull();
+  }
+
+  /** Writes the response entity as a string, as a message body writer would */
+  private static final class WriterContext implements WriterInterceptorContext {
+    private final ContainerRequest request;
+    private final ContainerResponse response;
+    @Nullable private final Runnable whileWriting;
+    private OutputStream output = new ByteArrayOutputStream();
+
+    WriterContext(
+        ContainerRequest request, ContainerResponse response, @Nullable Runnable whileWriting) {
+      this.request = request;
+      this.response = response;
+      this.whileWriting = whileWriting;
+    }
+
+    @Override
+    public void proceed() throws IOException {
+      output.write(response.getEntity().toString().getBytes(StandardCharsets.UTF_8));
+      if (whileWriting != null) {
+        whileWriting.run();
+      }
+    }
+
+    @Override
+    public Object getEntity() {
+      return response.getEntity();
+    }
+
+    @Override
+    public void setEntity(Object entity) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return output;
+    }
+
+    @Override
+    public void setOutputStream(OutputStream os) {
+      this.output = os;
+    }
+
+    @Override
+    public MultivaluedMap<String, Object> getHeaders() {
+      return response.getHeaders();
+    }
+
+    @Override
+    public Object getProperty(String name) {
+      return request.getProperty(name);
+    }
+
+    @Override
+    public Collection<String> getPropertyNames() {
+      return request.getPropertyNames();
+    }
+
+    @Override
+    public void setProperty(String name, Object object) {
+      request.setProperty(name, object);
+    }
+
+    @Override
+    public void removeProperty(String name) {
+      request.removeProperty(name);
+    }
+
+    @Override
+    public Annotation[] getAnnotations() {
+      return new Annotation[0];
+    }
+
+    @Override
+    public void setAnnotations(Annotation[] annotations) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Class<?> getType() {
+      return String.class;
+    }
+
+    @Override
+    public void setType(Class<?> type) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Type getGenericType() {
+      return String.class;
+    }
+
+    @Override
+    public void setGenericType(Type genericType) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MediaType getMediaType() {
+      return MediaType.TEXT_PLAIN_TYPE;
+    }
+
+    @Override
+    public void setMediaType(MediaType mediaType) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
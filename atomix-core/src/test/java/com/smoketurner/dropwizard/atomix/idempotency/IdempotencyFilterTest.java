@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.dropwizard.atomix.ManualScheduler;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import java.net.URI;
+import javax.ws.rs.core.Response;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.junit.jupiter.api.Test;
+
+class IdempotencyFilterTest {
+
+  private static final String HEADER = "Idempotency-Key";
+
+  private final InMemoryAtomicMap map = new InMemoryAtomicMap();
+  private final IdempotencyFilter filter =
+      new IdempotencyFilter(
+          new IdempotencyStore(
+              map::proxy,
+              "keys",
+              Duration.hours(1),
+              Duration.seconds(30),
+              100,
+              new ManualScheduler(),
+              Jackson.newObjectMapper(),
+              new MetricRegistry()),
+          HEADER);
+
+  private static ContainerRequest request(String key) {
+    final ContainerRequest request =
+        new ContainerRequest(
+            URI.create("http://localhost/"),
+            URI.create("http://localhost/orders"),
+            "POST",
+            null,
+            new MapPropertiesDelegate());
+    if (key != null) {
+      request.header(HEADER, key);
+    }
+    return request;
+  }
+
+  /** Run a request with the given key through the filter, responding with the given status */
+  private ContainerRequest process(String key, int status) throws Exception {
+    final ContainerRequest request = request(key);
+    filter.filter(request);
+    assertThat(request.getAbortResponse()).isNull();
+    filter.filter(
+        request,
+        new ContainerResponse(
+            request, Response.status(status).header("Location", "/orders/1").build()));
+    return request;
+  }
+
+  @Test
+  void testIgnoresRequestsWithoutAKey() throws Exception {
+    process(null, 201);
+    process(null, 201);
+
+    assertThat(map.getCalls()).isEqualTo(0);
+  }
+
+  @Test
+  void testReplaysTheResponseOfAClaimedKey() throws Exception {
+    process("1", 201);
+
+    final ContainerRequest retry = request("1");
+    filter.filter(retry);
+
+    final Response replayed = retry.getAbortResponse();
+    assertThat(replayed.getStatus()).isEqualTo(201);
+    assertThat(replayed.getHeaderString("Location")).isEqualTo("/orders/1");
+    assertThat(replayed.getHeaderString(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+  }
+
+  @Test
+  void testScopesKeysToTheEndpoint() throws Exception {
+    process("1", 201);
+
+    final ContainerRequest other =
+        new ContainerRequest(
+            URI.create("http://localhost/"),
+            URI.create("http://localhost/payments"),
+            "POST",
+            null,
+            new MapPropertiesDelegate());
+    other.header(HEADER, "1");
+    filter.filter(other);
+
+    assertThat(other.getAbortResponse()).isNull();
+  }
+
+  @Test
+  void testConflictsWhileTheFirstRequestIsInProgress() throws Exception {
+    filter.filter(request("1"));
+
+    final ContainerRequest retry = request("1");
+    filter.filter(retry);
+
+    assertThat(retry.getAbortResponse().getStatus()).isEqualTo(409);
+  }
+
+  @Test
+  void testReleasesTheKeyOnServerErrors() throws Exception {
+    process("1", 500);
+    process("1", 503);
+    process("1", 201);
+  }
+
+  @Test
+  void testReleasesTheKeyOnTransientClientErrors() throws Exception {
+    process("1", 408);
+    process("1", 409);
+    process("1", 429);
+    process("1", 201);
+  }
+
+  @Test
+  void testReplaysOtherClientErrors() throws Exception {
+    process("1", 422);
+
+    final ContainerRequest retry = request("1");
+    filter.filter(retry);
+
+    assertThat(retry.getAbortResponse().getStatus()).isEqualTo(422);
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.smoketurner.dropwizard.atomix.ManualScheduler;
+import com.smoketurner.dropwizard.atomix.jersey.StoredResponse;
+import io.atomix.utils.time.Versioned;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class IdempotencyStoreTest {
+
+  private static final String KEY = "POST orders 1";
+  private static final Duration TTL = Duration.hours(1);
+  private static final Duration LEASE_TTL = Duration.seconds(30);
+
+  private final InMemoryAtomicMap map = new InMemoryAtomicMap();
+  private final ManualScheduler scheduler = new ManualScheduler();
+  private final MetricRegistry metrics = new MetricRegistry();
+  private final IdempotencyStore store = store();
+
+  private IdempotencyStore store() {
+    return new IdempotencyStore(
+        map::proxy,
+        "keys",
+        TTL,
+        LEASE_TTL,
+        100,
+        scheduler,
+        Jackson.newObjectMapper(),
+        metrics);
+  }
+
+  private static StoredResponse response() {
+    return new StoredResponse(
+        201,
+        ImmutableMap.of("Location", ImmutableList.of("/orders/1")),
+        "{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void assertSameResponse(StoredResponse actual) {
+    assertThat(actual.getStatus()).isEqualTo(201);
+    assertThat(actual.getHeaders()).isEqualTo(response().getHeaders());
+    assertThat(new String(actual.getBody(), StandardCharsets.UTF_8)).isEqualTo("{\"id\":1}");
+  }
+
+  private long lostLeases() {
+    return metrics.meter("atomix.idempotency.keys.lost-leases").getCount();
+  }
+
+  @Test
+  void testClaimsAnUnusedKeyWithALease() {
+    final IdempotencyStore.Claim claim = store.claim(KEY);
+
+    assertThat(claim.isClaimed()).isTrue();
+    assertThat(claim.getResponse().isPresent()).isFalse();
+    assertThat(map.getEntry(KEY).value()).startsWith(IdempotencyStore.IN_PROGRESS);
+    assertThat(map.getTtl(KEY).toMillis()).isEqualTo(LEASE_TTL.toMilliseconds());
+    assertThat(scheduler.getDelays()).containsExactly(LEASE_TTL.toNanoseconds() / 3);
+  }
+
+  @Test
+  void testConflictsWhileTheKeyIsInProgress() {
+    store.claim(KEY);
+
+    final IdempotencyStore.Claim conflict = store().claim(KEY);
+
+    assertThat(conflict.isClaimed()).isFalse();
+    assertThat(conflict.getResponse().isPresent()).isFalse();
+  }
+
+  @Test
+  void testReplaysTheStoredResponseOnAnotherNode() {
+    store.complete(store.claim(KEY), response());
+
+    final IdempotencyStore.Claim replay = store().claim(KEY);
+
+    assertThat(replay.isClaimed()).isFalse();
+    assertSameResponse(replay.getResponse().get());
+    // the version-checked replace cannot set a TTL, so the full TTL must have been applied after it
+    assertThat(map.getTtl(KEY).toMillis()).isEqualTo(TTL.toMilliseconds());
+    assertThat(scheduler.getPending()).isEqualTo(0);
+  }
+
+  @Test
+  void testReplaysCompletedResponsesFromTheNearCache() {
+    store.complete(store.claim(KEY), response());
+    final int calls = map.getCalls();
+
+    final IdempotencyStore.Claim replay = store.claim(KEY);
+
+    assertSameResponse(replay.getResponse().get());
+    assertThat(map.getCalls()).isEqualTo(calls);
+  }
+
+  @Test
+  void testNearCacheEntryExpiresAtTheStoredKeysDeadline() throws Exception {
+    final String encoded = Jackson.newObjectMapper().writeValueAsString(response());
+    final java.time.Duration ttl = java.time.Duration.ofMillis(TTL.toMilliseconds());
+    // stored by another node long enough ago that only 200ms of its TTL remain
+    map.putEntry(KEY, encoded, System.currentTimeMillis() - ttl.toMillis() + 200, ttl);
+
+    assertSameResponse(store.claim(KEY).getResponse().get());
+    final int calls = map.getCalls();
+    assertSameResponse(store.claim(KEY).getResponse().get());
+    assertThat(map.getCalls()).isEqualTo(calls);
+
+    Thread.sleep(300);
+
+    assertThat(store.claim(KEY).isClaimed()).isTrue();
+  }
+
+  @Test
+  void testRenewsTheLeaseWhileTheRequestIsInProgress() {
+    final IdempotencyStore.Claim claim = store.claim(KEY);
+    final Versioned<String> claimed = map.getEntry(KEY);
+
+    assertThat(scheduler.runNext()).isTrue();
+
+    final Versioned<String> renewed = map.getEntry(KEY);
+    assertThat(renewed.value()).startsWith(IdempotencyStore.IN_PROGRESS);
+    assertThat(renewed.version()).isNotEqualTo(claimed.version());
+    assertThat(map.getTtl(KEY).toMillis()).isEqualTo(LEASE_TTL.toMilliseconds());
+    assertThat(scheduler.getPending()).isEqualTo(1);
+
+    store.complete(claim, response());
+    assertSameResponse(store().claim(KEY).getResponse().get());
+    assertThat(scheduler.getPending()).isEqualTo(0);
+  }
+
+  @Test
+  void testDoesNotOverwriteAKeyWhoseLeaseWasLost() {
+    final IdempotencyStore.Claim claim = store.claim(KEY);
+    // the lease lapsed and a retry claimed the key
+    map.overwrite(KEY, IdempotencyStore.IN_PROGRESS + "retry");
+
+    store.complete(claim, response());
+
+    assertThat(map.getEntry(KEY).value()).isEqualTo(IdempotencyStore.IN_PROGRESS + "retry");
+    assertThat(lostLeases()).isEqualTo(1);
+    assertThat(scheduler.getPending()).isEqualTo(0);
+    assertThat(store.claim(KEY).isClaimed()).isFalse();
+  }
+
+  @Test
+  void testStopsRenewingALostLease() {
+    final IdempotencyStore.Claim claim = store.claim(KEY);
+    map.overwrite(KEY, IdempotencyStore.IN_PROGRESS + "retry");
+
+    scheduler.runNext();
+
+    assertThat(lostLeases()).isEqualTo(1);
+    assertThat(scheduler.getPending()).isEqualTo(0);
+    assertThat(map.getEntry(KEY).value()).isEqualTo(IdempotencyStore.IN_PROGRESS + "retry");
+
+    store.complete(claim, response());
+    assertThat(lostLeases()).isEqualTo(1);
+    assertThat(map.getEntry(KEY).value()).isEqualTo(IdempotencyStore.IN_PROGRESS + "retry");
+  }
+
+  @Test
+  void testReleaseLetsTheKeyBeClaimedAgain() {
+    store.release(store.claim(KEY));
+
+    assertThat(map.getEntry(KEY)).isNull();
+    assertThat(scheduler.getPending()).isEqualTo(0);
+    assertThat(store.claim(KEY).isClaimed()).isTrue();
+  }
+
+  @Test
+  void testReleaseLeavesAKeyClaimedByAnotherRequest() {
+    final IdempotencyStore.Claim claim = store.claim(KEY);
+    map.overwrite(KEY, IdempotencyStore.IN_PROGRESS + "retry");
+
+    store.release(claim);
+
+    assertThat(map.getEntry(KEY).value()).isEqualTo(IdempotencyStore.IN_PROGRESS + "retry");
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.idempotency;
+
+import io.atomix.core.map.AtomicMap;
+import io.atomix.utils.time.Versioned;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * An in-memory stand-in for the operations {@link IdempotencyStore} makes against an {@link
+ * AtomicMap}, honouring entry TTLs and versions. A version-checked replace keeps no TTL, so tests
+ * also cover the store re-applying it. Any other operation fails.
+ */
+class InMemoryAtomicMap {
+
+  private final Map<String, Entry> entries = new HashMap<>();
+  private long nextVersion = 1;
+  private int calls;
+
+  @SuppressWarnings("unchecked")
+  AtomicMap<String, String> proxy() {
+    return (AtomicMap<String, String>)
+        Proxy.newProxyInstance(
+            AtomicMap.class.getClassLoader(),
+            new Class<?>[] {AtomicMap.class},
+            (proxy, method, args) -> invoke(method, args));
+  }
+
+  /** @return the number of operations made against the map */
+  synchronized int getCalls() {
+    return calls;
+  }
+
+  /** Store an entry directly, as if it had been written by another node */
+  synchronized void putEntry(String key, String value, long creationTime, Duration ttl) {
+    entries.put(key, new Entry(value, nextVersion++, creationTime, ttl));
+  }
+
+  /** Replace the value under a key, as if another node had claimed or completed it */
+  synchronized void overwrite(String key, String value) {
+    entries.put(key, new Entry(value, nextVersion++, System.currentTimeMillis(), null));
+  }
+
+  @Nullable
+  synchronized Versioned<String> getEntry(String key) {
+    final Entry entry = live(key);
+    return entry == null ? null : entry.versioned();
+  }
+
+  /** @return the TTL of the entry under a key, or null if it never expires */
+  @Nullable
+  synchronized Duration getTtl(String key) {
+    final Entry entry = live(key);
+    return entry == null ? null : entry.ttl;
+  }
+
+  private synchronized Object invoke(Method method, Object[] args) {
+    if (method.getDeclaringClass() == Object.class) {
+      throw new UnsupportedOperationException(method.getName());
+    }
+    calls++;
+    final String key = (String) args[0];
+    final Entry existing = live(key);
+    final String signature = method.getName() + "/" + args.length;
+    switch (signature) {
+      case "get/1":
+        return existing == null ? null : existing.versioned();
+      case "putIfAbsent/3":
+        if (existing != null) {
+          return existing.versioned();
+        }
+        put(key, (String) args[1], (Duration) args[2]);
+        return null;
+      case "put/3":
+        put(key, (String) args[1], (Duration) args[2]);
+        return existing == null ? null : existing.versioned();
+      case "putAndGet/3":
+        return put(key, (String) args[1], (Duration) args[2]).versioned();
+      case "replace/3":
+        if (existing == null || !(args[1] instanceof Long) || existing.version != (Long) args[1]) {
+          return false;
+        }
+        put(key, (String) args[2], null);
+        return true;
+      case "remove/2":
+        if (existing == null || !(args[1] instanceof Long) || existing.version != (Long) args[1]) {
+          return false;
+        }
+        entries.remove(key);
+        return true;
+      default:
+        throw new UnsupportedOperationException(signature);
+    }
+  }
+
+  private Entry put(String key, String value, @Nullable Duration ttl) {
+    final Entry entry = new Entry(value, nextVersion++, System.currentTimeMillis(), ttl);
+    entries.put(key, entry);
+    return entry;
+  }
+
+  @Nullable
+  private Entry live(String key) {
+    final Entry entry = entries.get(key);
+    if (entry != null
+        && entry.ttl != null
+        && entry.creationTime + entry.ttl.toMillis() - System.currentTimeMillis() <= 0) {
+      entries.remove(key);
+      return null;
+    }
+    return entry;
+  }
+
+  private static final class Entry {
+    private final String value;
+    private final long version;
+    private final long creationTime;
+    @Nullable private final Duration ttl;
+
+    Entry(String value, long version, long creationTime, @Nullable Duration ttl) {
+      this.value = value;
+      this.version = version;
+      this.creationTime = creationTime;
+      this.ttl = ttl;
+    }
+
+    Versioned<String> versioned() {
+      return new Versioned<>(value, version, creationTime);
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.atomix.policy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableSet;
+import com.smoketurner.dropwizard.atomix.ManualScheduler;
+import com.smoketurner.dropwizard.atomix.bulkhead.BulkheadFullException;
+import com.smoketurner.dropwizard.atomix.primitive.PrimitiveOperation;
+import io.dropwizard.util.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class OperationPolicyTest {
+
+  private static final PrimitiveOperation READ =
+      new PrimitiveOperation("counter", "atomic-counter", "get");
+  private static final PrimitiveOperation WRITE =
+      new PrimitiveOperation("counter", "atomic-counter", "incrementAndGet");
+  private static final PrimitiveOperation SET =
+      new PrimitiveOperation("counter", "atomic-counter", "set");
+
+  private final ManualScheduler scheduler = new ManualScheduler();
+  private final MetricRegistry metrics = new MetricRegistry();
+  private final List<CompletableFuture<String>> started = new ArrayList<>();
+  private final List<CompletableFuture<String>> hedged = new ArrayList<>();
+  private final Supplier<CompletableFuture<String>> invocation = () -> start(started);
+  private final Supplier<CompletableFuture<String>> hedgeInvocation = () -> start(hedged);
+
+  private static CompletableFuture<String> start(List<CompletableFuture<String>> attempts) {
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    attempts.add(future);
+    return future;
+  }
+
+  private static RetryFactory retry(int maxAttempts) {
+    final RetryFactory retry = new RetryFactory();
+    retry.setMaxAttempts(maxAttempts);
+    retry.setBackoff(Duration.milliseconds(50));
+    retry.setMaxBackoff(Duration.milliseconds(100));
+    return retry;
+  }
+
+  private OperationPolicy policy(
+      Optional<Duration> timeout, Optional<RetryFactory> retry, Optional<HedgeFactory> hedge) {
+    return new OperationPolicy("counter", timeout, retry, hedge, metrics, scheduler);
+  }
+
+  private OperationPolicy retrying(RetryFactory retry) {
+    return policy(Optional.empty(), Optional.of(retry), Optional.empty());
+  }
+
+  private static Throwable failure(CompletableFuture<?> future) {
+    final Throwable error = future.handle((result, e) -> e).join();
+    return error instanceof CompletionException ? error.getCause() : error;
+  }
+
+  @Test
+  void testRetriesReadOnlyOperations() {
+    final OperationPolicy policy = retrying(retry(3));
+
+    final CompletableFuture<String> result = policy.intercept(READ, invocation);
+    started.get(0).completeExceptionally(new IllegalStateException("unavailable"));
+    assertThat(result.isDone()).isFalse();
+    assertThat(scheduler.runPending()).isEqualTo(1);
+    started.get(1).complete("value");
+
+    assertThat(result.join()).isEqualTo("value");
+    assertThat(metrics.meter("atomix.policy.counter.retries").getCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void testFailsOnceEveryAttemptHasFailed() {
+    final OperationPolicy policy = retrying(retry(3));
+
+    final CompletableFuture<String> result = policy.intercept(READ, invocation);
+    started.get(0).completeExceptionally(new IllegalStateException("first"));
+    scheduler.runPending();
+    started.get(1).completeExceptionally(new IllegalStateException("second"));
+    scheduler.runPending();
+    started.get(2).completeExceptionally(new IllegalStateException("third"));
+
+    assertThat(started).hasSize(3);
+    assertThat(scheduler.getPending()).isEqualTo(0);
+    assertThat(failure(result)).hasMessageContaining("third");
+  }
+
+  @Test
+  void testDoesNotRetryOperationsWhichAreNotIdempotent() {
+    final OperationPolicy policy = retrying(retry(3));
+
+    final CompletableFuture<String> result = policy.intercept(WRITE, invocation);
+    started.get(0).completeExceptionally(new IllegalStateException("unavailable"));
+
+    assertThat(result.isCompletedExceptionally()).isTrue();
+    assertThat(scheduler.getDelays()).isEmpty();
+    assertThat(started).hasSize(1);
+  }
+
+  @Test
+  void testRetriesOperationsListedAsIdempotent() {
+    final RetryFactory retry = retry(2);
+    retry.setIdempotentOperations(ImmutableSet.of("set"));
+    final OperationPolicy policy = retrying(retry);
+
+    final CompletableFuture<String> result = policy.intercept(SET, invocation);
+    started.get(0).completeExceptionally(new IllegalStateException("unavailable"));
+    scheduler.runPending();
+    started.get(1).complete("done");
+
+    assertThat(result.join()).isEqualTo("done");
+  }
+
+  @Test
+  void testNeverRetriesRejectedOperations() {
+    final OperationPolicy policy = retrying(retry(3));
+
+    final CompletableFuture<String> rejected = policy.intercept(READ, invocation);
+    started.get(0).completeExceptionally(new BulkheadFullException("counter"));
+    final CompletableFuture<String> wrapped = policy.intercept(READ, invocation);
+    started
+        .get(1)
+        .completeExceptionally(new CompletionException(new RejectedExecutionException("full")));
+
+    assertThat(failure(rejected)).isInstanceOf(BulkheadFullException.class);
+    assertThat(wrapped.isCompletedExceptionally()).isTrue();
+    assertThat(scheduler.getDelays()).isEmpty();
+    assertThat(started).hasSize(2);
+  }
+
+  @Test
+  void testBackoffIsJitteredAndCappedAtMaxBackoff() {
+    final OperationPolicy policy = retrying(retry(40));
+
+    final CompletableFuture<String> result = policy.intercept(READ, invocation);
+    for (int attempt = 0; attempt < 40; attempt++) {
+      started.get(attempt).completeExceptionally(new IllegalStateException("unavailable"));
+      scheduler.runPending();
+    }
+
+    final List<Long> delays = scheduler.getDelays();
+    assertThat(result.isCompletedExceptionally()).isTrue();
+    assertThat(delays).hasSize(39);
+    // the first retry waits up to the base backoff, later ones up to double that but no longer
+    assertThat(delays.get(0)).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(50));
+    for (long delay : delays) {
+      assertThat(delay).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(100));
+    }
+  }
+
+  @Test
+  void testBackoffLongerThanMaxBackoffIsCapped() {
+    final RetryFactory retry = retry(40);
+    retry.setBackoff(Duration.days(1));
+    retry.setMaxBackoff(Duration.seconds(1));
+    final OperationPolicy policy = retrying(retry);
+
+    policy.intercept(READ, invocation);
+    for (int attempt = 0; attempt < 40; attempt++) {
+      started.get(attempt).completeExceptionally(new IllegalStateException("unavailable"));
+      scheduler.runPending();
+    }
+
+    for (long delay : scheduler.getDelays()) {
+      assertThat(delay).isBetween(0L, TimeUnit.SECONDS.toNanos(1));
+    }
+  }
+
+  @Test
+  void testTimesOutAndCancelsTheAttempt() {
+    final OperationPolicy policy =
+        policy(Optional.of(Duration.seconds(1)), Optional.empty(), Optional.empty());
+
+    final CompletableFuture<String> result = policy.intercept(WRITE, invocation);
+    assertThat(scheduler.getDelays()).containsExactly(TimeUnit.SECONDS.toNanos(1));
+    scheduler.runPending();
+
+    assertThat(failure(result)).isInstanceOf(TimeoutException.class);
+    assertThat(started.get(0).isCancelled()).isTrue();
+    assertThat(metrics.meter("atomix.policy.counter.timeouts").getCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void testCancelsTheTimeoutOnceTheAttemptCompletes() {
+    final OperationPolicy policy =
+        policy(Optional.of(Duration.seconds(1)), Optional.empty(), Optional.empty());
+
+    final CompletableFuture<String> result = policy.intercept(WRITE, invocation);
+    started.get(0).complete("value");
+
+    assertThat(result.join()).isEqualTo("value");
+    assertThat(scheduler.getPending()).isEqualTo(0);
+  }
+
+  @Test
+  void testRetriesAnAttemptWhichTimedOut() {
+    final OperationPolicy policy =
+        policy(Optional.of(Duration.seconds(1)), Optional.of(retry(2)), Optional.empty());
+
+    final CompletableFuture<String> result = policy.intercept(READ, invocation);
+    // the timeout, then the retry it schedules
+    assertThat(scheduler.runNext()).isTrue();
+    assertThat(scheduler.runNext()).isTrue();
+    started.get(1).complete("value");
+
+    assertThat(started.get(0).isCancelled()).isTrue();
+    assertThat(result.join()).isEqualTo("value");
+  }
+
+  @Test
+  void testFailsWhenTheSchedulerRejectsTheRetry() {
+    final OperationPolicy policy = retrying(retry(3));
+
+    final CompletableFuture<String> result = policy.intercept(READ, invocation);
+    scheduler.reject();
+    started.get(0).completeExceptionally(new IllegalStateException("unavailable"));
+
+    assertThat(failure(result)).isInstanceOf(RejectedExecutionException.class);
+    assertThat(started).hasSize(1);
+  }
+
+  @Test
+  void testHedgesSlowReadsThroughTheHedgeInvocation() {
+    final OperationPolicy policy =
+        policy(Optional.empty(), Optional.empty(), Optional.of(new HedgeFactory()));
+
+    final CompletableFuture<String> result = policy.intercept(READ, invocation, hedgeInvocation);
+    assertThat(hedged).isEmpty();
+    // no read latencies have been recorded yet, so the hedge waits for the minimum delay
+    assertThat(scheduler.getDelays()).containsExactly(TimeUnit.MILLISECONDS.toNanos(10));
+    scheduler.runPending();
+    assertThat(hedged).hasSize(1);
+    hedged.get(0).complete("hedged");
+
+    assertThat(result.join()).isEqualTo("hedged");
+    assertThat(started.get(0).isCancelled()).isTrue();
+    assertThat(metrics.meter("atomix.policy.counter.hedges").getCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void testDoesNotHedgeReadsWhichCompleteInTime() {
+    final OperationPolicy policy =
+        policy(Optional.empty(), Optional.empty(), Optional.of(new HedgeFactory()));
+
+    final CompletableFuture<String> result = policy.intercept(READ, invocation, hedgeInvocation);
+    started.get(0).complete("value");
+
+    assertThat(result.join()).isEqualTo("value");
+    assertThat(scheduler.runPending()).isEqualTo(0);
+    assertThat(hedged).isEmpty();
+  }
+
+  @Test
+  void testFailsHedgedReadOnlyOnceBothAttemptsHaveFailed() {
+    final OperationPolicy policy =
+        policy(Optional.empty(), Optional.empty(), Optional.of(new HedgeFactory()));
+
+    final CompletableFuture<String> result = policy.intercept(READ, invocation, hedgeInvocation);
+    scheduler.runPending();
+    hedged.get(0).completeExceptionally(new IllegalStateException("hedge"));
+    assertThat(result.isDone()).isFalse();
+    started.get(0).completeExceptionally(new IllegalStateException("first"));
+
+    assertThat(failure(result)).hasMessageContaining("first");
+  }
+
+  @Test
+  void testNeverHedgesWritesOrReadsWithoutAHedgeInvocation() {
+    final OperationPolicy policy =
+        policy(Optional.empty(), Optional.empty(), Optional.of(new HedgeFactory()));
+
+    policy.intercept(WRITE, invocation, hedgeInvocation);
+    policy.intercept(READ, invocation);
+
+    assertThat(scheduler.getDelays()).isEmpty();
+    assertThat(started).hasSize(2);
+  }
+}
@@ -16,12 +16,18 @@
 package com.example.helloworld;
 
 import com.example.helloworld.resources.HelloWorldResource;
+import com.google.common.base.Suppliers;
 import com.smoketurner.dropwizard.atomix.AtomixBundle;
 import com.smoketurner.dropwizard.atomix.AtomixFactory;
+import com.smoketurner.dropwizard.atomix.primitive.PrimitiveDecorator;
 import io.atomix.core.Atomix;
+import io.atomix.core.counter.AsyncAtomicCounter;
+import io.atomix.protocols.raft.MultiRaftProtocol;
+import io.atomix.protocols.raft.ReadConsistency;
 import io.dropwizard.Application;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import java.util.function.Supplier;
 
 public class HelloWorldApplication extends Application<HelloWorldConfiguration> {
 
@@ -49,9 +55,31 @@ public class HelloWorldApplication extends Application<HelloWorldConfiguration>
   public void run(HelloWorldConfiguration configuration, Environment environment) throws Exception {
 
     final Atomix atomix = configuration.getAtomix().build();
+    final PrimitiveDecorator decorator =
+        configuration.getAtomix().buildPrimitiveDecorator(environment);
+
+    // Atomix is not started until after run() returns, so the counter is looked up on first use.
+    // The cached getter returns the instance opened by the configured warm-up, while hedged reads
+    // go through a second instance with its own session.
+    final Supplier<AsyncAtomicCounter> counter =
+        Suppliers.memoize(
+            () ->
+                decorator.decorate(
+                    AsyncAtomicCounter.class,
+                    atomix.getAtomicCounter("counter").async(),
+                    () ->
+                        atomix
+                            .atomicCounterBuilder("counter")
+                            .withProtocol(
+                                MultiRaftProtocol.builder()
+                                    .withReadConsistency(ReadConsistency.SEQUENTIAL)
+                                    .build())
+                            .build()
+                            .async()));
 
     final HelloWorldResource resource =
-        new HelloWorldResource(atomix, configuration.getTemplate(), configuration.getDefaultName());
+        new HelloWorldResource(
+            atomix, counter, configuration.getTemplate(), configuration.getDefaultName());
     environment.jersey().register(resource);
   }
 }
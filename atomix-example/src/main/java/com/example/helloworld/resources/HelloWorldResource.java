@@ -19,12 +19,11 @@ import com.codahale.metrics.annotation.Timed;
 import com.example.helloworld.api.Saying;
 import com.smoketurner.dropwizard.atomix.AtomixMember;
 import io.atomix.core.Atomix;
-import io.atomix.core.counter.AtomicCounter;
-import io.atomix.protocols.raft.MultiRaftProtocol;
-import io.atomix.protocols.raft.ReadConsistency;
+import io.atomix.core.counter.AsyncAtomicCounter;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -36,6 +35,7 @@ import javax.ws.rs.core.MediaType;
 @Produces(MediaType.APPLICATION_JSON)
 public class HelloWorldResource {
   private final Atomix atomix;
+  private final Supplier<AsyncAtomicCounter> counter;
   private final String template;
   private final String defaultName;
 
@@ -43,11 +43,14 @@ public class HelloWorldResource {
    * Constructor
    *
    * @param atomix
+   * @param counter
    * @param template
    * @param defaultName
    */
-  public HelloWorldResource(Atomix atomix, String template, String defaultName) {
+  public HelloWorldResource(
+      Atomix atomix, Supplier<AsyncAtomicCounter> counter, String template, String defaultName) {
     this.atomix = Objects.requireNonNull(atomix);
+    this.counter = Objects.requireNonNull(counter);
     this.template = template;
     this.defaultName = defaultName;
   }
@@ -56,17 +59,8 @@ public class HelloWorldResource {
   @Timed
   @Path("/hello-world")
   public Saying sayHello(@QueryParam("name") Optional<String> name) {
-    final AtomicCounter counter =
-        atomix
-            .atomicCounterBuilder("counter")
-            .withProtocol(
-                MultiRaftProtocol.builder()
-                    .withReadConsistency(ReadConsistency.LINEARIZABLE)
-                    .build())
-            .build();
-
     final String value = String.format(template, name.orElse(defaultName));
-    return new Saying(counter.incrementAndGet(), value);
+    return new Saying(counter.get().incrementAndGet().join(), value);
   }
 
   @GET